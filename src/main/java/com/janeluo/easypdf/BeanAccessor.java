@@ -0,0 +1,170 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * POJO 属性访问
+ * <p>
+ * 每个类只分析一次(通过 ClassValue 缓存)，公开的 getter 通过 LambdaMetafactory
+ * 生成访问函数，之后取值与直接调用 getter 相同，不再使用反射。
+ * 无法生成时(例如类由其它类加载器加载)退回到 MethodHandle。
+ *
+ * @author janeluo
+ */
+final class BeanAccessor {
+    private static final ClassValue<BeanAccessor> ACCESSORS = new ClassValue<BeanAccessor>() {
+        @Override
+        protected BeanAccessor computeValue(Class<?> type) {
+            return new BeanAccessor(type);
+        }
+    };
+
+    private static final MethodType FUNCTION_TYPE = MethodType.methodType(Function.class);
+    private static final MethodType APPLY_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private final Map<String, Function<Object, Object>> properties = new HashMap<>();
+
+    private BeanAccessor(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Field field : type.getFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                try {
+                    field.setAccessible(true);
+                    properties.put(field.getName(), invoker(lookup.unreflectGetter(field)));
+                } catch (Exception ignored) {
+                }
+            }
+        }
+        // getter 优先于同名的字段
+        for (Method method : type.getMethods()) {
+            String name = propertyName(method);
+            if (name != null) {
+                try {
+                    properties.put(name, accessor(lookup, method));
+                } catch (Exception ignored) {
+                }
+            }
+        }
+    }
+
+    static BeanAccessor of(Class<?> type) {
+        return ACCESSORS.get(type);
+    }
+
+    /**
+     * 是否作为 POJO 访问属性，字符串、数字、集合等值类型不是
+     */
+    static boolean isBean(Object value) {
+        return !(value instanceof CharSequence || value instanceof Number
+                || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum || value instanceof Date
+                || value instanceof Map || value instanceof Collection
+                || value.getClass().isArray());
+    }
+
+    /**
+     * 取得属性值
+     *
+     * @param bean 对象
+     * @param name 属性名
+     * @return 属性值，没有该属性时返回 null
+     */
+    Object get(Object bean, String name) {
+        Function<Object, Object> accessor = properties.get(name);
+        return accessor == null ? null : accessor.apply(bean);
+    }
+
+    private static String propertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0
+                || method.getReturnType() == void.class || method.getDeclaringClass() == Object.class) {
+            return null;
+        }
+        String name = method.getName();
+        String property;
+        if (name.startsWith("get") && name.length() > 3) {
+            property = name.substring(3);
+        } else if (name.startsWith("is") && name.length() > 2
+                && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+            property = name.substring(2);
+        } else {
+            return null;
+        }
+        // 与 java.beans.Introspector.decapitalize 相同
+        if (property.length() > 1 && Character.isUpperCase(property.charAt(1))
+                && Character.isUpperCase(property.charAt(0))) {
+            return property;
+        }
+        return Character.toLowerCase(property.charAt(0)) + property.substring(1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> accessor(MethodHandles.Lookup lookup, Method method)
+            throws IllegalAccessException {
+        Class<?> owner = method.getDeclaringClass();
+        boolean accessible = Modifier.isPublic(owner.getModifiers());
+        if (!accessible) {
+            method.setAccessible(true);
+        }
+        MethodHandle handle = lookup.unreflect(method);
+        if (accessible && visible(owner) && visible(method.getReturnType())) {
+            try {
+                MethodType instantiated = MethodType.methodType(
+                        MethodType.methodType(method.getReturnType()).wrap().returnType(), owner);
+                return (Function<Object, Object>) LambdaMetafactory.metafactory(lookup, "apply",
+                        FUNCTION_TYPE, APPLY_TYPE, handle, instantiated).getTarget().invoke();
+            } catch (Throwable ignored) {
+                // 退回到 MethodHandle
+            }
+        }
+        return invoker(handle);
+    }
+
+    /**
+     * 生成的函数由本类的类加载器解析，其它类加载器加载的类不可见
+     */
+    private static boolean visible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        try {
+            return Class.forName(type.getName(), false, BeanAccessor.class.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static Function<Object, Object> invoker(MethodHandle handle) {
+        MethodHandle target = handle.asType(APPLY_TYPE);
+        return bean -> {
+            try {
+                return target.invokeExact(bean);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,48 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import java.util.Map;
+
+/**
+ * POJO 数据源，id 为对象的属性名(getter 或者公开字段)
+ * <p>
+ * 属性通过生成的访问函数读取，每个类只分析一次，不需要把对象序列化为 JSON。
+ */
+public class BeanDataSource implements DataSource {
+    private final Object bean;
+    private final BeanAccessor accessor;
+
+    public BeanDataSource(Object bean) {
+        this.bean = bean;
+        this.accessor = BeanAccessor.of(bean.getClass());
+    }
+
+    @Override
+    public Object get(String id) {
+        return accessor.get(bean, id);
+    }
+
+    /**
+     * 根据数据的类型创建数据源
+     *
+     * @param data Map、DataSource 或者 POJO
+     * @return 数据源，data 为 null 时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public static DataSource of(Object data) {
+        if (data == null || data instanceof DataSource) {
+            return (DataSource) data;
+        }
+        if (data instanceof Map) {
+            return new MapDataSource((Map<String, ?>) data);
+        }
+        return new BeanDataSource(data);
+    }
+}
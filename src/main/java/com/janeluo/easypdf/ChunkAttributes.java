@@ -0,0 +1,178 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import org.xml.sax.Attributes;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 不可变的 chunk 属性表
+ * <p>
+ * 子元素通过 parent 引用继承父元素的属性，只保存自己覆盖的部分，
+ * 因此解析时的分配量不再随嵌套深度乘以 chunk 数量增长。
+ * 修改总是返回新的实例，已有实例可以被多个 chunk 安全共享。
+ *
+ * @author janeluo
+ */
+final class ChunkAttributes extends AbstractMap<String, String> {
+    static final ChunkAttributes EMPTY =
+            new ChunkAttributes(null, new String[0], new String[0]);
+
+    /**
+     * 超过该层数时把继承链拍平，限制查找开销
+     */
+    private static final int MAX_DEPTH = 8;
+
+    private final ChunkAttributes parent;
+    private final String[] keys;
+    private final String[] values;
+    private final int depth;
+    private volatile Set<Entry<String, String>> entries;
+    private volatile ChunkStyle style;
+
+    private ChunkAttributes(ChunkAttributes parent, String[] keys, String[] values) {
+        this.parent = parent;
+        this.keys = keys;
+        this.values = values;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+    }
+
+    ChunkAttributes with(String key, String value) {
+        if (key == null || value == null || value.equals(get(key))) {
+            return this;
+        }
+        return layer(new String[]{key}, new String[]{value});
+    }
+
+    ChunkAttributes with(Attributes attrs) {
+        int length = attrs.getLength();
+        if (length == 0) {
+            return this;
+        }
+        String[] newKeys = new String[length];
+        String[] newValues = new String[length];
+        for (int i = 0; i < length; i++) {
+            newKeys[i] = attrs.getQName(i);
+            newValues[i] = attrs.getValue(i);
+        }
+        return layer(newKeys, newValues);
+    }
+
+    ChunkAttributes with(Map<String, String> attrs) {
+        if (attrs.isEmpty()) {
+            return this;
+        }
+        String[] newKeys = new String[attrs.size()];
+        String[] newValues = new String[attrs.size()];
+        int count = 0;
+        for (Entry<String, String> entry : attrs.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                newKeys[count] = entry.getKey();
+                newValues[count] = entry.getValue();
+                count++;
+            }
+        }
+        if (count < newKeys.length) {
+            String[] k = new String[count];
+            String[] v = new String[count];
+            System.arraycopy(newKeys, 0, k, 0, count);
+            System.arraycopy(newValues, 0, v, 0, count);
+            newKeys = k;
+            newValues = v;
+        }
+        return count == 0 ? this : layer(newKeys, newValues);
+    }
+
+    private ChunkAttributes layer(String[] newKeys, String[] newValues) {
+        if (this == EMPTY) {
+            return new ChunkAttributes(null, newKeys, newValues);
+        }
+        if (depth < MAX_DEPTH) {
+            return new ChunkAttributes(this, newKeys, newValues);
+        }
+        Map<String, String> flat = flatten();
+        for (int i = 0; i < newKeys.length; i++) {
+            flat.put(newKeys[i], newValues[i]);
+        }
+        String[] flatKeys = new String[flat.size()];
+        String[] flatValues = new String[flat.size()];
+        int i = 0;
+        for (Entry<String, String> entry : flat.entrySet()) {
+            flatKeys[i] = entry.getKey();
+            flatValues[i] = entry.getValue();
+            i++;
+        }
+        return new ChunkAttributes(null, flatKeys, flatValues);
+    }
+
+    /**
+     * @return 解析好的样式，每个实例只解析一次
+     */
+    ChunkStyle style() {
+        ChunkStyle result = style;
+        if (result == null) {
+            result = ChunkStyle.of(this);
+            style = result;
+        }
+        return result;
+    }
+
+    @Override
+    public String get(Object key) {
+        for (ChunkAttributes node = this; node != null; node = node.parent) {
+            // 同一层里后出现的值优先
+            for (int i = node.keys.length - 1; i >= 0; i--) {
+                if (node.keys[i].equals(key)) {
+                    return node.values[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return keys.length == 0 && parent == null;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        Set<Entry<String, String>> result = entries;
+        if (result == null) {
+            result = Collections.unmodifiableMap(flatten()).entrySet();
+            entries = result;
+        }
+        return result;
+    }
+
+    private Map<String, String> flatten() {
+        Map<String, String> map = new HashMap<>();
+        flattenInto(map);
+        return map;
+    }
+
+    private void flattenInto(Map<String, String> map) {
+        if (parent != null) {
+            parent.flattenInto(map);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            map.put(keys[i], values[i]);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.itextpdf.layout.property.TextAlignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 解析好的 chunk 样式
+ * <p>
+ * 同一组属性只解析一次，相同的样式共享同一个实例，PDF 和 HTML 输出都使用它。
+ * 字体只保存家族名称，PdfFont 属于具体文档，由文档的字体缓存提供。
+ *
+ * @author janeluo
+ */
+final class ChunkStyle {
+    static final int BOLD = 1;
+    static final int UNDERLINE = 2;
+    static final int ITALIC = 4;
+    /**
+     * 没有 font-style 属性，使用块默认风格
+     */
+    static final int INHERIT = -1;
+
+    /**
+     * 超过该数量后不再驻留，避免异常模板撑大缓存
+     */
+    private static final int MAX_INTERNED = 4096;
+    private static final Map<ChunkStyle, ChunkStyle> INTERNED = new ConcurrentHashMap<>();
+    /**
+     * 样式相关属性到样式的映射，命中时不需要解析属性
+     */
+    private static final Map<List<String>, ChunkStyle> BY_ATTRS = new ConcurrentHashMap<>();
+    /**
+     * 影响样式的属性，id 等其它属性不参与查找
+     */
+    private static final Set<String> STYLE_KEYS = new HashSet<>(Arrays.asList(
+            "font-family", "font-size", "font-style", "super", "sub", "minlen",
+            "align", "indent", "space-before", "space-after", "colspan"));
+
+    /**
+     * 字体家族，null 表示使用块默认
+     */
+    final String fontFamily;
+    /**
+     * 字号，0 表示使用块默认
+     */
+    final int fontSize;
+    /**
+     * BOLD、UNDERLINE、ITALIC 的组合，或者 INHERIT
+     */
+    final int fontFlags;
+    /**
+     * 上标、下标的基线偏移，0 表示普通文字
+     */
+    final float textRise;
+    /**
+     * 最小长度，-1 表示没有 minlen 属性
+     */
+    final int minlen;
+    /**
+     * 对齐方式，null 表示使用块默认
+     */
+    final TextAlignment alignment;
+    /**
+     * 无法识别的 align 属性值
+     */
+    final String unknownAlignment;
+    final Float indent;
+    final Float spaceBefore;
+    final Float spaceAfter;
+    final int colspan;
+    /**
+     * HTML 行内元素和块元素的 style 属性，空串表示没有
+     */
+    final String htmlStyle;
+    final String htmlBlockStyle;
+
+    private final int hash;
+
+    private ChunkStyle(Map<String, String> attrs) {
+        String value = attrs.get("font-family");
+        fontFamily = value;
+
+        int size = 0;
+        float rise = 0;
+        // 上标、下标默认使用小字号
+        if ("true".equalsIgnoreCase(attrs.get("super"))) {
+            rise = 6.0f;
+            size = 8;
+        }
+        if ("true".equalsIgnoreCase(attrs.get("sub"))) {
+            rise = -3.0f;
+            size = 8;
+        }
+        textRise = rise;
+        value = attrs.get("font-size");
+        if (value != null) {
+            try {
+                size = Integer.parseInt(value);
+            } catch (Exception ex) {
+                System.err.println("Font size '" + value + "' invalid.");
+            }
+        }
+        fontSize = size;
+
+        value = attrs.get("font-style");
+        fontFlags = value == null ? INHERIT : parseFontFlags(value);
+
+        value = attrs.get("minlen");
+        int len = -1;
+        if (value != null && value.length() > 0) {
+            try {
+                len = Integer.parseInt(value);
+            } catch (Exception ex) {
+                System.err.println("minlen need a integer value.");
+                len = 0;
+            }
+        }
+        minlen = len;
+
+        value = attrs.get("align");
+        TextAlignment align = null;
+        if (value != null) {
+            if ("left".equalsIgnoreCase(value)) {
+                align = TextAlignment.LEFT;
+            } else if ("center".equalsIgnoreCase(value)) {
+                align = TextAlignment.CENTER;
+            } else if ("right".equalsIgnoreCase(value)) {
+                align = TextAlignment.RIGHT;
+            }
+        }
+        alignment = align;
+        unknownAlignment = value != null && align == null ? value : null;
+
+        indent = parseFloat(attrs.get("indent"), "Indent attribute must has a float value");
+        spaceBefore = parseFloat(attrs.get("space-before"),
+                "space-before attribute must has a float value");
+        spaceAfter = parseFloat(attrs.get("space-after"),
+                "space-after attribute must has a float value");
+
+        value = attrs.get("colspan");
+        int span = 1;
+        if (value != null) {
+            try {
+                span = Integer.parseInt(value);
+            } catch (Exception ex) {
+                System.err.println("colspan must has a integer value");
+            }
+        }
+        colspan = span;
+
+        htmlStyle = htmlStyle(attrs, false);
+        htmlBlockStyle = htmlStyle(attrs, true);
+
+        hash = Objects.hash(fontFamily, fontSize, fontFlags, textRise, minlen,
+                alignment, unknownAlignment, indent, spaceBefore, spaceAfter, colspan,
+                htmlStyle, htmlBlockStyle);
+    }
+
+    /**
+     * 返回属性对应的样式，相同的样式返回同一个实例
+     */
+    static ChunkStyle of(Map<String, String> attrs) {
+        List<String> key = styleKey(attrs);
+        ChunkStyle cached = BY_ATTRS.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ChunkStyle style = new ChunkStyle(attrs);
+        ChunkStyle interned = INTERNED.get(style);
+        if (interned == null) {
+            if (INTERNED.size() >= MAX_INTERNED) {
+                return style;
+            }
+            interned = INTERNED.putIfAbsent(style, style);
+            if (interned == null) {
+                interned = style;
+            }
+        }
+        if (BY_ATTRS.size() < MAX_INTERNED) {
+            BY_ATTRS.putIfAbsent(key, interned);
+        }
+        return interned;
+    }
+
+    /**
+     * 按属性表的顺序取出影响样式的属性，htmlStyle 忽略大小写并且依赖顺序，因此保留原样
+     */
+    private static List<String> styleKey(Map<String, String> attrs) {
+        List<String> key = new ArrayList<>();
+        for (Map.Entry<String, String> entry : attrs.entrySet()) {
+            String name = entry.getKey();
+            if (STYLE_KEYS.contains(name) || "font-style".equalsIgnoreCase(name)
+                    || "indent".equalsIgnoreCase(name) || "align".equalsIgnoreCase(name)) {
+                key.add(name);
+                key.add(entry.getValue());
+            }
+        }
+        return key;
+    }
+
+    static int internedSize() {
+        return INTERNED.size();
+    }
+
+    private static int parseFontFlags(String value) {
+        int flags = 0;
+        for (String style : value.split(",")) {
+            String label = style.trim();
+            if ("bold".equalsIgnoreCase(label)) {
+                flags |= BOLD;
+            } else if ("italic".equalsIgnoreCase(label)) {
+                flags |= ITALIC;
+            } else if ("underline".equalsIgnoreCase(label)) {
+                flags |= UNDERLINE;
+            }
+        }
+        return flags;
+    }
+
+    private static Float parseFloat(String value, String error) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Float.parseFloat(value);
+        } catch (Exception ex) {
+            System.err.println(error);
+            return null;
+        }
+    }
+
+    private static String htmlStyle(Map<String, String> attrs, boolean blockElement) {
+        StringBuilder styleString = new StringBuilder();
+        for (Map.Entry<String, String> entry : attrs.entrySet()) {
+            String key = entry.getKey();
+            if ("font-style".equalsIgnoreCase(key)) {
+                String[] styles = entry.getValue().split(",");
+                for (String style : styles) {
+                    String styleName = style.trim();
+                    if ("bold".equalsIgnoreCase(styleName)) {
+                        styleString.append("font-weight: bold; ");
+                    } else if ("italic".equalsIgnoreCase(styleName)) {
+                        styleString.append("font-style: italic; ");
+                    } else if ("underline".equalsIgnoreCase(styleName)) {
+                        styleString.append("font-decoration: underline; ");
+                    }
+                }
+            } else if (blockElement && "indent".equalsIgnoreCase(key)) {
+                styleString.append("text-indent: ").append(entry.getValue()).append("px; ");
+            } else if (blockElement && "align".equalsIgnoreCase(key)) {
+                styleString.append("text-align: ").append(entry.getValue()).append("; ");
+            }
+        }
+        return styleString.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChunkStyle)) {
+            return false;
+        }
+        ChunkStyle that = (ChunkStyle) o;
+        return hash == that.hash
+                && fontSize == that.fontSize
+                && fontFlags == that.fontFlags
+                && Float.compare(textRise, that.textRise) == 0
+                && minlen == that.minlen
+                && colspan == that.colspan
+                && alignment == that.alignment
+                && Objects.equals(fontFamily, that.fontFamily)
+                && Objects.equals(unknownAlignment, that.unknownAlignment)
+                && Objects.equals(indent, that.indent)
+                && Objects.equals(spaceBefore, that.spaceBefore)
+                && Objects.equals(spaceAfter, that.spaceAfter)
+                && htmlStyle.equals(that.htmlStyle)
+                && htmlBlockStyle.equals(that.htmlBlockStyle);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
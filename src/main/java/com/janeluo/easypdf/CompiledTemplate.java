@@ -0,0 +1,169 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.janeluo.easypdf.image.ImageOptions;
+import com.janeluo.easypdf.image.ImagePrefetcher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 编译后的模板
+ * <p>
+ * XML 模板只需要解析一次，编译为块、表格、值节点等操作的列表，属性在编译时已经确定，
+ * 之后可以使用不同的数据源生成任意多个 PDF 或者 HTML 文档，不需要再次解析 XML。
+ * 编译后的模板不可修改，可以被多个线程同时使用。
+ */
+public final class CompiledTemplate {
+    private final List<TemplateOp> ops;
+    private volatile Set<ValuePath> paths;
+
+    CompiledTemplate(List<TemplateOp> ops) {
+        this.ops = Collections.unmodifiableList(new ArrayList<>(ops));
+    }
+
+    /**
+     * 模板引用的所有数据路径，可以用于只提取需要的数据
+     *
+     * @return 只读的路径集合
+     */
+    public Set<ValuePath> getPaths() {
+        Set<ValuePath> result = paths;
+        if (result == null) {
+            Set<ValuePath> collected = new LinkedHashSet<>();
+            for (TemplateOp op : ops) {
+                op.collectPaths(collected);
+            }
+            result = Collections.unmodifiableSet(collected);
+            paths = result;
+        }
+        return result;
+    }
+
+    /**
+     * 编译 XML 模板
+     *
+     * @param xmlStream XML 模板输入流
+     * @return 编译后的模板
+     * @throws IOException 模板读取失败或者格式错误
+     */
+    public static CompiledTemplate compile(InputStream xmlStream) throws IOException {
+        TextParserDocHandler handler = new TextParserDocHandler();
+        try {
+            TextParser.newSAXParser().parse(xmlStream, handler);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Compile template failed: " + e.getMessage(), e);
+        }
+        return handler.getTemplate();
+    }
+
+    /**
+     * 读取编译后的模板文件，文件通过内存映射读取
+     *
+     * @param path 编译后的模板文件，参考 {@link #writeTo(OutputStream)}
+     * @return 编译后的模板
+     * @throws IOException 文件读取失败、格式错误或者版本不一致
+     */
+    public static CompiledTemplate load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return TemplateCodec.read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * 输出为二进制格式，之后可以通过 {@link #load(Path)} 读取，不需要再次解析 XML
+     *
+     * @param stream 输出流，写入后不关闭
+     * @throws IOException 写入失败
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        TemplateCodec.write(this, stream);
+    }
+
+    /**
+     * 生成文档，文档在生成完成或者失败后关闭
+     *
+     * @param doc  输出文档，还没有打开
+     * @param data 数据源，可以为 null
+     * @throws IOException 生成失败
+     */
+    public void render(TextDoc doc, DataSource data) throws IOException {
+        if (!doc.open()) {
+            throw new IOException("Open document failed.");
+        }
+        try {
+            RenderContext context = new RenderContext(doc, data);
+            for (TemplateOp op : ops) {
+                op.apply(context);
+            }
+        } catch (Throwable ex) {
+            // 生成失败时也要释放文档和字体缓存，关闭的异常不能覆盖原来的异常
+            try {
+                doc.close();
+            } catch (RuntimeException closeEx) {
+                ex.addSuppressed(closeEx);
+            }
+            throw ex;
+        }
+        doc.close();
+    }
+
+    /**
+     * 提交模板中所有图片文件的预取，条件不成立的 if 分支中的图片不预取，
+     * repeat 中的 if 每个元素结果不同，两个分支都预取
+     *
+     * @param prefetcher 图片预取
+     * @param options    文档级的图片处理选项
+     * @param data       数据源，可以为 null
+     */
+    void prefetchImages(ImagePrefetcher prefetcher, ImageOptions options, DataSource data) {
+        prefetchImages(ops, prefetcher, options, data, false);
+    }
+
+    private static void prefetchImages(List<TemplateOp> ops, ImagePrefetcher prefetcher,
+                                       ImageOptions options, DataSource data, boolean repeated) {
+        for (TemplateOp op : ops) {
+            if (op instanceof ImageOp) {
+                ImageOp image = (ImageOp) op;
+                String src = image.attrs.getValue("src");
+                if (src != null) {
+                    prefetcher.prefetch(src, options.merge(image.attrs),
+                            TextDoc.parseSize(image.attrs.getValue("width")),
+                            TextDoc.parseSize(image.attrs.getValue("height")));
+                }
+            } else if (op instanceof RepeatOp) {
+                prefetchImages(((RepeatOp) op).body, prefetcher, options, data, true);
+            } else if (op instanceof IfOp) {
+                IfOp ifOp = (IfOp) op;
+                if (repeated) {
+                    prefetchImages(ifOp.then, prefetcher, options, data, true);
+                    prefetchImages(ifOp.otherwise, prefetcher, options, data, true);
+                } else {
+                    prefetchImages(ifOp.branch(data), prefetcher, options, data, false);
+                }
+            }
+        }
+    }
+
+    List<TemplateOp> ops() {
+        return ops;
+    }
+}
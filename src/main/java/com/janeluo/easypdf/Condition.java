@@ -0,0 +1,340 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译好的 if 条件表达式，例如 {@code vip && amount gt 1000}
+ * <p>
+ * 表达式在编译模板时解析一次，生成文档时只对数据求值。支持：
+ * <ul>
+ * <li>数据路径，格式与 value 的 id 相同，单独使用时按真假判断</li>
+ * <li>字符串('...' 或 "...")、数字、true、false、null</li>
+ * <li>比较 == != &gt; &gt;= &lt; &lt;=，以及 XML 中更方便书写的 eq ne gt ge lt le</li>
+ * <li>逻辑 ! &amp;&amp; ||，以及 not and or，可以使用括号</li>
+ * </ul>
+ * 两边都是数字(包括数字字符串)时按数值比较，否则按字符串比较。
+ * null、false、0、空字符串、"false"、空数组和空对象为假，其它为真。
+ *
+ * @author janeluo
+ */
+final class Condition {
+    private final String source;
+    private final Expr root;
+    private final List<ValuePath> paths;
+
+    private Condition(String source, Expr root, List<ValuePath> paths) {
+        this.source = source;
+        this.root = root;
+        this.paths = paths;
+    }
+
+    /**
+     * 编译表达式
+     *
+     * @param source 表达式
+     * @return 编译好的表达式
+     * @throws IllegalArgumentException 表达式格式错误
+     */
+    static Condition compile(String source) {
+        if (source == null) {
+            throw new IllegalArgumentException("test expression is null");
+        }
+        Parser parser = new Parser(source);
+        Expr root = parser.parseOr();
+        parser.skipSpaces();
+        if (parser.pos < source.length()) {
+            throw parser.error("unexpected '" + source.charAt(parser.pos) + "'");
+        }
+        return new Condition(source, root, parser.paths);
+    }
+
+    String getSource() {
+        return source;
+    }
+
+    /**
+     * 对数据求值，取不到的数据按 null 处理
+     *
+     * @param data 数据源，可以为 null
+     * @return 条件是否成立
+     */
+    boolean test(DataSource data) {
+        return truthy(root.value(data));
+    }
+
+    /**
+     * 收集表达式引用的数据路径
+     */
+    void collectPaths(Collection<ValuePath> result) {
+        result.addAll(paths);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private interface Expr {
+        Object value(DataSource data);
+    }
+
+    static boolean truthy(Object value) {
+        if (value == null) {
+            return false;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            BigDecimal number = number(value);
+            return number == null || number.signum() != 0;
+        }
+        if (value instanceof CharSequence) {
+            String text = value.toString();
+            return !text.isEmpty() && !"false".equalsIgnoreCase(text);
+        }
+        if (value instanceof Collection) {
+            return !((Collection<?>) value).isEmpty();
+        }
+        if (value instanceof Map) {
+            return !((Map<?, ?>) value).isEmpty();
+        }
+        if (value.getClass().isArray()) {
+            return Array.getLength(value) > 0;
+        }
+        return true;
+    }
+
+    private static BigDecimal number(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Number || value instanceof CharSequence) {
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return 比较结果，不能比较时为 null
+     */
+    private static Integer compare(Object left, Object right) {
+        BigDecimal a = number(left);
+        BigDecimal b = number(right);
+        if (a != null && b != null) {
+            return a.compareTo(b);
+        }
+        String x = ValuePath.text(left);
+        String y = ValuePath.text(right);
+        if (x != null && y != null) {
+            return x.compareTo(y);
+        }
+        return null;
+    }
+
+    private static boolean equal(Object left, Object right) {
+        if (left == null || right == null) {
+            return left == right;
+        }
+        Integer result = compare(left, right);
+        return result != null ? result == 0 : left.equals(right);
+    }
+
+    private static Expr comparison(String op, Expr left, Expr right) {
+        switch (op) {
+            case "==":
+                return data -> equal(left.value(data), right.value(data));
+            case "!=":
+                return data -> !equal(left.value(data), right.value(data));
+            default:
+                return data -> {
+                    Object a = left.value(data);
+                    Object b = right.value(data);
+                    Integer result = a == null || b == null ? null : compare(a, b);
+                    if (result == null) {
+                        return false;
+                    }
+                    switch (op) {
+                        case ">":
+                            return result > 0;
+                        case ">=":
+                            return result >= 0;
+                        case "<":
+                            return result < 0;
+                        default:
+                            return result <= 0;
+                    }
+                };
+        }
+    }
+
+    /**
+     * 递归下降解析
+     */
+    private static final class Parser {
+        private final String source;
+        private final List<ValuePath> paths = new ArrayList<>();
+        private int pos = 0;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid test expression '" + source + "': "
+                    + message + " at " + pos);
+        }
+
+        void skipSpaces() {
+            while (pos < source.length() && Character.isWhitespace(source.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        /**
+         * 读取运算符或者关键字，不匹配时不移动位置
+         */
+        boolean accept(String token) {
+            skipSpaces();
+            if (!source.startsWith(token, pos)) {
+                return false;
+            }
+            int end = pos + token.length();
+            if (Character.isLetter(token.charAt(0)) && end < source.length() && isPathChar(source.charAt(end))) {
+                return false;
+            }
+            pos = end;
+            return true;
+        }
+
+        Expr parseOr() {
+            Expr left = parseAnd();
+            while (accept("||") || accept("or")) {
+                Expr a = left;
+                Expr b = parseAnd();
+                left = data -> truthy(a.value(data)) || truthy(b.value(data));
+            }
+            return left;
+        }
+
+        Expr parseAnd() {
+            Expr left = parseNot();
+            while (accept("&&") || accept("and")) {
+                Expr a = left;
+                Expr b = parseNot();
+                left = data -> truthy(a.value(data)) && truthy(b.value(data));
+            }
+            return left;
+        }
+
+        Expr parseNot() {
+            if (accept("!=")) {
+                throw error("operand expected");
+            }
+            if (accept("!") || accept("not")) {
+                Expr operand = parseNot();
+                return data -> !truthy(operand.value(data));
+            }
+            return parseComparison();
+        }
+
+        Expr parseComparison() {
+            if (accept("(")) {
+                Expr expr = parseOr();
+                if (!accept(")")) {
+                    throw error("')' expected");
+                }
+                return expr;
+            }
+            Expr left = parseOperand();
+            String op = operator();
+            return op == null ? left : comparison(op, left, parseOperand());
+        }
+
+        String operator() {
+            String[][] operators = {
+                    {"==", "=="}, {"!=", "!="}, {">=", ">="}, {"<=", "<="}, {">", ">"}, {"<", "<"},
+                    {"eq", "=="}, {"ne", "!="}, {"ge", ">="}, {"le", "<="}, {"gt", ">"}, {"lt", "<"},
+            };
+            for (String[] operator : operators) {
+                if (accept(operator[0])) {
+                    return operator[1];
+                }
+            }
+            return null;
+        }
+
+        Expr parseOperand() {
+            skipSpaces();
+            if (pos >= source.length()) {
+                throw error("operand expected");
+            }
+            char ch = source.charAt(pos);
+            if (ch == '\'' || ch == '"') {
+                int end = source.indexOf(ch, pos + 1);
+                if (end < 0) {
+                    throw error("unclosed string");
+                }
+                String text = source.substring(pos + 1, end);
+                pos = end + 1;
+                return data -> text;
+            }
+            if (ch == '-' || Character.isDigit(ch)) {
+                int start = pos++;
+                while (pos < source.length()
+                        && (Character.isDigit(source.charAt(pos)) || source.charAt(pos) == '.')) {
+                    pos++;
+                }
+                try {
+                    BigDecimal number = new BigDecimal(source.substring(start, pos));
+                    return data -> number;
+                } catch (NumberFormatException ex) {
+                    pos = start;
+                    throw error("invalid number");
+                }
+            }
+            if (!isPathChar(ch)) {
+                throw error("unexpected '" + ch + "'");
+            }
+            int start = pos;
+            while (pos < source.length() && isPathChar(source.charAt(pos))) {
+                pos++;
+            }
+            String name = source.substring(start, pos);
+            switch (name) {
+                case "true":
+                    return data -> Boolean.TRUE;
+                case "false":
+                    return data -> Boolean.FALSE;
+                case "null":
+                    return data -> null;
+                default:
+                    ValuePath path = ValuePath.compile(name);
+                    paths.add(path);
+                    return data -> data == null ? null : path.resolve(data);
+            }
+        }
+
+        private static boolean isPathChar(char ch) {
+            return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '.'
+                    || ch == '[' || ch == ']' || ch == '*' || ch == '-';
+        }
+    }
+}
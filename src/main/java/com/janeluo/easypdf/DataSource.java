@@ -0,0 +1,35 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+/**
+ * 模板的数据源
+ * <p>
+ * 编译后的模板在生成文档时通过数据源取得 value、img、qrcode 等元素引用的数据，
+ * 同一个模板可以使用不同的数据源生成多个文档。
+ */
+public interface DataSource {
+    /**
+     * 取得 id 对应的值
+     *
+     * @param id 元素的 id 属性
+     * @return 值，没有该数据时返回 null
+     */
+    Object get(String id);
+
+    /**
+     * 取得路径对应的值，例如 {@code customer.address[0].city}
+     *
+     * @param path 编译好的路径
+     * @return 值，没有该数据时返回 null
+     */
+    default Object get(ValuePath path) {
+        return path.resolve(this);
+    }
+}
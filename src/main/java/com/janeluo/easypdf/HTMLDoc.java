@@ -9,6 +9,10 @@
 package com.janeluo.easypdf;
 
 import com.alibaba.fastjson.JSONObject;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.janeluo.easypdf.draw.BarcodeCache;
+import com.janeluo.easypdf.draw.BarcodeDrawer;
 import org.xml.sax.Attributes;
 
 import java.io.IOException;
@@ -183,35 +187,9 @@ public class HTMLDoc extends TextDoc {
         return block_labels.get(blockName.toLowerCase());
     }
 
-    private Map<String, String> getHtmlAttrs(TextChunk chunk,
-                                             boolean blockElement) {
-        Map<String, String> chunkAttrs = chunk.getAttrs();
-        Map<String, String> htmlAttrs = new HashMap<>();
-        StringBuilder styleString = new StringBuilder();
-
-        for (String key : chunkAttrs.keySet()) {
-            if ("font-style".equalsIgnoreCase(key)) {
-                String[] styles = chunkAttrs.get(key).split(",");
-                for (String style : styles) {
-                    String styleName = style.trim();
-                    if ("bold".equalsIgnoreCase(styleName)) {
-                        styleString.append("font-weight: bold; ");
-                    } else if ("italic".equalsIgnoreCase(styleName)) {
-                        styleString.append("font-style: italic; ");
-                    } else if ("underline".equalsIgnoreCase(styleName)) {
-                        styleString.append("font-decoration: underline; ");
-                    }
-                }
-            } else if (blockElement && "indent".equalsIgnoreCase(key)) {
-                styleString.append("text-indent: ").append(chunkAttrs.get(key)).append("px; ");
-            } else if (blockElement && "align".equalsIgnoreCase(key)) {
-                styleString.append("text-align: ").append(chunkAttrs.get(key)).append("; ");
-            }
-        }
-        if (styleString.toString().length() > 0) {
-            htmlAttrs.put("style", styleString.toString());
-        }
-        return htmlAttrs;
+    private String getHtmlStyle(TextChunk chunk, boolean blockElement) {
+        ChunkStyle style = chunk.getStyle();
+        return blockElement ? style.htmlBlockStyle : style.htmlStyle;
     }
 
     private String htmlCharEscape(String contents) {
@@ -233,7 +211,7 @@ public class HTMLDoc extends TextDoc {
     }
 
     private void writeValue(TextChunk chunk) {
-        Map<String, String> attrs = chunk.getAttrs();
+        Map<String, String> attrs = chunk.getAttributes();
         String id = attrs.get("id");
         String minlen = attrs.get("minlen");
 
@@ -296,9 +274,9 @@ public class HTMLDoc extends TextDoc {
             } else {
                 writeStream("<span");
             }
-            Map<String, String> htmlAttrs = getHtmlAttrs(chunk, i == 0);
-            for (String key : htmlAttrs.keySet()) {
-                writeStream(" " + key + "=\"" + htmlAttrs.get(key) + "\"");
+            String style = getHtmlStyle(chunk, i == 0);
+            if (style.length() > 0) {
+                writeStream(" style=\"" + style + "\"");
             }
             writeStream(">");
             writeStream(htmlCharEscape(chunk.getContents()));
@@ -323,12 +301,36 @@ public class HTMLDoc extends TextDoc {
     public void addImage(Attributes attrs) {
         String value = attrs.getValue("src");
         if (value == null) {
-            System.err.println("img missing src attribute.");
+            // 引用数据源的图片，输出占位元素
+            String id = attrs.getValue("id");
+            if (id == null) {
+                System.err.println("img missing src attribute.");
+                return;
+            }
+            writeStream("<img id=\"" + Util.escapeHtmlString(id) + "\"/>");
             return;
         }
         writeStream("<img src=\"" + Util.escapeHtmlString(value) + "\"/>");
     }
 
+    @Override
+    public void addBarcode(BarcodeFormat format, Attributes attrs, String contents) {
+        if (contents == null) {
+            // 引用数据源的条码，输出占位元素
+            writeStream("<svg id=\"" + Util.escapeHtmlString(attrs.getValue("id")) + "\"/>");
+            return;
+        }
+        try {
+            BitMatrix matrix = BarcodeCache.get(format, contents,
+                    attrs.getValue("ecc"), parseMargin(attrs.getValue("margin")));
+            float[] size = BarcodeDrawer.displaySize(matrix,
+                    parseSize(attrs.getValue("width")), parseSize(attrs.getValue("height")));
+            writeStream(BarcodeDrawer.toSvg(matrix, size[0], size[1]));
+        } catch (IOException e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
     @Override
     public void writeTable(TextTable table) {
         if (!isOpen() || table == null) {
@@ -369,8 +371,18 @@ public class HTMLDoc extends TextDoc {
             }
             if (columns[colno] > 0) {
                 TextChunk textChunk = table.getCells().get(i);
-                writeStream("        <td width=\"" + columns[colno] + "%\">" +
-                        textChunk.getContents() + "</td>\n");
+                if (textChunk.isValue()) {
+                    // 值单元格与 value 一样输出输入框，原有内容放在之后
+                    writeStream("        <td width=\"" + columns[colno] + "%\">");
+                    writeValue(textChunk);
+                    if (textChunk.getContents() != null) {
+                        writeStream(htmlCharEscape(textChunk.getContents()));
+                    }
+                    writeStream("</td>\n");
+                } else {
+                    writeStream("        <td width=\"" + columns[colno] + "%\">" +
+                            textChunk.getContents() + "</td>\n");
+                }
             }
         }
         writeStream("      </tr>\n");
@@ -0,0 +1,27 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * JSON 数据源，数据为 JSON 中的 data 对象
+ */
+public class JsonDataSource implements DataSource {
+    private final JSONObject data;
+
+    public JsonDataSource(JSONObject data) {
+        this.data = data;
+    }
+
+    @Override
+    public Object get(String id) {
+        return data.get(id);
+    }
+}
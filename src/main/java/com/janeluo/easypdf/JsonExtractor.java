@@ -0,0 +1,479 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按模板引用的路径从 JSON 流中提取数据
+ * <p>
+ * 逐个字符读取 JSON，只为模板引用到的值构建对象，其它内容直接跳过，
+ * 内存和解析时间只与模板用到的数据有关，而与 JSON 的大小无关。
+ * 结果与完整解析的结构相同(只是缺少没有引用的部分)，可以直接交给 {@link JsonDataSource}。
+ *
+ * @author janeluo
+ */
+final class JsonExtractor {
+    private static final Object SKIPPED = new Object();
+
+    /**
+     * 路径树的节点
+     */
+    private static final class Node {
+        /**
+         * 需要完整的值
+         */
+        boolean whole;
+        Map<Object, Node> children;
+
+        Node child(Object segment) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            return children.computeIfAbsent(segment, k -> new Node());
+        }
+
+        Node get(Object segment) {
+            if (children == null) {
+                return null;
+            }
+            Node child = children.get(segment);
+            if (child == null && segment instanceof Integer) {
+                // repeat 引用的元素属性
+                child = children.get(ValuePath.ANY_INDEX);
+            }
+            return child;
+        }
+    }
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position = 0;
+    private int limit = 0;
+    private long offset = 0;
+    private final StringBuilder builder = new StringBuilder();
+
+    private JsonExtractor(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * 提取 data 对象中路径引用的数据
+     *
+     * @param reader JSON 输入
+     * @param paths  模板引用的路径，参考 {@link CompiledTemplate#getPaths()}
+     * @return 只包含 data 中被引用数据的 JSON 对象
+     * @throws IOException 读取失败或者 JSON 格式错误
+     */
+    static JSONObject extract(Reader reader, Collection<ValuePath> paths) throws IOException {
+        Node root = new Node();
+        Node data = root.child("data");
+        for (ValuePath path : paths) {
+            Node node = data;
+            for (int i = 0; i < path.size(); i++) {
+                node = node.child(path.segment(i));
+            }
+            node.whole = true;
+            if (path.isCompound()) {
+                // 兼容平铺的 key
+                data.child(path.getPath()).whole = true;
+            }
+        }
+
+        JsonExtractor extractor = new JsonExtractor(reader);
+        Object value = extractor.readValue(root);
+        if (extractor.peek() != -1) {
+            throw extractor.error("Unexpected content");
+        }
+        if (!(value instanceof JSONObject)) {
+            throw new IOException("Failed to parse JSON stream: root must be a object.");
+        }
+        return (JSONObject) value;
+    }
+
+    private Object readValue(Node node) throws IOException {
+        if (node == null) {
+            skipValue();
+            return SKIPPED;
+        }
+        if (node.whole) {
+            return parseValue();
+        }
+        int ch = peek();
+        if (ch == '{') {
+            return readObject(node);
+        }
+        if (ch == '[') {
+            return readArray(node);
+        }
+        return parseValue();
+    }
+
+    private JSONObject readObject(Node node) throws IOException {
+        expect('{');
+        JSONObject object = new JSONObject();
+        if (peek() == '}') {
+            next();
+            return object;
+        }
+        while (true) {
+            if (peek() != '"') {
+                throw error("Object key expected");
+            }
+            next();
+            String key = readString();
+            expect(':');
+            Object value = readValue(node.get(key));
+            if (value != SKIPPED) {
+                object.put(key, value);
+            }
+            int ch = nextToken();
+            if (ch == '}') {
+                return object;
+            }
+            if (ch != ',') {
+                throw error("',' or '}' expected");
+            }
+        }
+    }
+
+    private JSONArray readArray(Node node) throws IOException {
+        expect('[');
+        JSONArray array = new JSONArray();
+        if (peek() == ']') {
+            next();
+            return array;
+        }
+        int index = 0;
+        while (true) {
+            Object value = readValue(node.get(index));
+            if (value != SKIPPED) {
+                // 保持下标不变
+                while (array.size() < index) {
+                    array.add(null);
+                }
+                array.add(value);
+            }
+            index++;
+            int ch = nextToken();
+            if (ch == ']') {
+                return array;
+            }
+            if (ch != ',') {
+                throw error("',' or ']' expected");
+            }
+        }
+    }
+
+    /**
+     * 完整解析一个值
+     */
+    private Object parseValue() throws IOException {
+        int ch = peek();
+        switch (ch) {
+            case '{':
+                next();
+                JSONObject object = new JSONObject();
+                if (peek() == '}') {
+                    next();
+                    return object;
+                }
+                while (true) {
+                    if (peek() != '"') {
+                        throw error("Object key expected");
+                    }
+                    next();
+                    String key = readString();
+                    expect(':');
+                    object.put(key, parseValue());
+                    int c = nextToken();
+                    if (c == '}') {
+                        return object;
+                    }
+                    if (c != ',') {
+                        throw error("',' or '}' expected");
+                    }
+                }
+            case '[':
+                next();
+                JSONArray array = new JSONArray();
+                if (peek() == ']') {
+                    next();
+                    return array;
+                }
+                while (true) {
+                    array.add(parseValue());
+                    int c = nextToken();
+                    if (c == ']') {
+                        return array;
+                    }
+                    if (c != ',') {
+                        throw error("',' or ']' expected");
+                    }
+                }
+            case '"':
+                next();
+                return readString();
+            case 't':
+                literal("true");
+                return Boolean.TRUE;
+            case 'f':
+                literal("false");
+                return Boolean.FALSE;
+            case 'n':
+                literal("null");
+                return null;
+            default:
+                if (ch == '-' || (ch >= '0' && ch <= '9')) {
+                    return readNumber();
+                }
+                throw error("Value expected");
+        }
+    }
+
+    /**
+     * 跳过一个值，不创建任何对象
+     */
+    private void skipValue() throws IOException {
+        int ch = peek();
+        if (ch == '"') {
+            next();
+            skipString();
+            return;
+        }
+        if (ch != '{' && ch != '[') {
+            // 数字或者字面量
+            if (ch == -1) {
+                throw error("Value expected");
+            }
+            while (true) {
+                ch = read();
+                if (ch == -1 || ch == ',' || ch == '}' || ch == ']' || ch <= ' ') {
+                    if (ch != -1) {
+                        position--;
+                    }
+                    return;
+                }
+            }
+        }
+        int depth = 0;
+        while (true) {
+            ch = read();
+            switch (ch) {
+                case -1:
+                    throw error("Unexpected end of JSON");
+                case '"':
+                    skipString();
+                    break;
+                case '{':
+                case '[':
+                    depth++;
+                    break;
+                case '}':
+                case ']':
+                    if (--depth == 0) {
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            int ch = read();
+            if (ch == '"') {
+                return;
+            }
+            if (ch == '\\') {
+                read();
+            } else if (ch == -1) {
+                throw error("Unterminated string");
+            }
+        }
+    }
+
+    private String readString() throws IOException {
+        builder.setLength(0);
+        while (true) {
+            // 没有转义字符时整段复制
+            int start = position;
+            while (position < limit) {
+                char c = buffer[position];
+                if (c == '"' || c == '\\') {
+                    break;
+                }
+                position++;
+            }
+            builder.append(buffer, start, position - start);
+            int ch = read();
+            if (ch == '"') {
+                return builder.toString();
+            }
+            if (ch == '\\') {
+                builder.append(readEscape());
+            } else if (ch == -1) {
+                throw error("Unterminated string");
+            } else {
+                position--;
+            }
+        }
+    }
+
+    private char readEscape() throws IOException {
+        int ch = read();
+        switch (ch) {
+            case '"':
+            case '\\':
+            case '/':
+                return (char) ch;
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                return (char) value;
+            default:
+                throw error("Invalid escape");
+        }
+    }
+
+    /**
+     * 与 fastjson 一致：整数为 Integer、Long 或者 BigInteger，小数为 BigDecimal
+     */
+    private Object readNumber() throws IOException {
+        builder.setLength(0);
+        boolean decimal = false;
+        while (true) {
+            int ch = read();
+            if ((ch >= '0' && ch <= '9') || ch == '-' || ch == '+') {
+                builder.append((char) ch);
+            } else if (ch == '.' || ch == 'e' || ch == 'E') {
+                decimal = true;
+                builder.append((char) ch);
+            } else {
+                if (ch != -1) {
+                    position--;
+                }
+                break;
+            }
+        }
+        String text = builder.toString();
+        try {
+            if (decimal) {
+                return new BigDecimal(text);
+            }
+            long value = Long.parseLong(text);
+            if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                return (int) value;
+            }
+            return value;
+        } catch (NumberFormatException ex) {
+            try {
+                return new BigInteger(text);
+            } catch (NumberFormatException e) {
+                throw error("Invalid number '" + text + "'");
+            }
+        }
+    }
+
+    private void literal(String expected) throws IOException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (read() != expected.charAt(i)) {
+                throw error("'" + expected + "' expected");
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextToken() != expected) {
+            throw error("'" + expected + "' expected");
+        }
+    }
+
+    /**
+     * 跳过空白后读取一个字符
+     */
+    private int nextToken() throws IOException {
+        int ch = peek();
+        if (ch != -1) {
+            position++;
+        }
+        return ch;
+    }
+
+    private void next() throws IOException {
+        nextToken();
+    }
+
+    /**
+     * 跳过空白，返回下一个字符但不读取
+     */
+    private int peek() throws IOException {
+        while (true) {
+            if (position >= limit && !fill()) {
+                return -1;
+            }
+            char c = buffer[position];
+            if (c > ' ' && c != '\uFEFF') {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    private int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int count = reader.read(buffer, 0, buffer.length);
+        if (count <= 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Failed to parse JSON stream: " + message
+                + " at offset " + (offset + position) + ".");
+    }
+}
@@ -0,0 +1,27 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import java.util.Map;
+
+/**
+ * Map 数据源，嵌套的 Map、List、数组以及 POJO 都可以通过路径访问
+ */
+public class MapDataSource implements DataSource {
+    private final Map<String, ?> data;
+
+    public MapDataSource(Map<String, ?> data) {
+        this.data = data;
+    }
+
+    @Override
+    public Object get(String id) {
+        return data.get(id);
+    }
+}
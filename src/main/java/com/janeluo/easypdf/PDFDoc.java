@@ -8,8 +8,21 @@
  */
 package com.janeluo.easypdf;
 
-import com.itextpdf.kernel.pdf.PdfReader;
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import com.janeluo.easypdf.draw.BarcodeCache;
+import com.janeluo.easypdf.draw.BarcodeDrawer;
 import com.janeluo.easypdf.draw.CustomLineSeparator;
+import com.janeluo.easypdf.font.FontRegistry;
+import com.janeluo.easypdf.font.PdfFontCache;
+import com.janeluo.easypdf.image.ImageDataCache;
+import com.janeluo.easypdf.image.ImageOptions;
+import com.janeluo.easypdf.image.ImagePrefetcher;
+import com.janeluo.easypdf.image.ImageProcessor;
+import com.janeluo.easypdf.image.InlineImage;
+import com.janeluo.easypdf.template.TemplateBackground;
+import com.janeluo.easypdf.template.TemplatePdf;
+import com.janeluo.easypdf.template.TemplateStore;
 import com.itextpdf.io.font.PdfEncodings;
 import com.itextpdf.io.image.ImageDataFactory;
 import com.itextpdf.kernel.font.PdfFont;
@@ -18,6 +31,8 @@ import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.pdf.PdfDocument;
 import com.itextpdf.kernel.pdf.PdfDocumentInfo;
 import com.itextpdf.kernel.pdf.PdfWriter;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+import com.itextpdf.kernel.pdf.xobject.PdfImageXObject;
 import com.itextpdf.layout.Document;
 import com.itextpdf.layout.element.*;
 import com.itextpdf.layout.property.TextAlignment;
@@ -29,7 +44,7 @@ import org.xml.sax.Attributes;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,8 +59,20 @@ public class PDFDoc extends TextDoc {
 
     public final static int FONT_FAMILY_HEI = 1;
     public final static int FONT_FAMILY_SONG = 2;
+    /**
+     * 逐行输出的表格每添加这么多单元格刷新一次
+     */
+    private final static int TABLE_FLUSH_CELLS = 256;
 
     protected InputStream templateInputStream;
+    /**
+     * 缓存的模板，设置后忽略 templateInputStream
+     */
+    protected TemplatePdf template;
+    /**
+     * 大于 0 时以模板的该页作为每一页的背景，而不是在模板上追加内容
+     */
+    protected int templateBackgroundPage = 0;
 
     private final Map<String, BlockType> blockTypes = new HashMap<String, BlockType>() {{
         put("title", BlockType.BLOCK_TITLE);
@@ -54,11 +81,44 @@ public class PDFDoc extends TextDoc {
         put("para", BlockType.BLOCK_PARA);
     }};
 
-    private final List<PDFBlockDefault> pdfBlockDefaults;
+    private final Map<BlockType, PDFBlockDefault> pdfBlockDefaults;
 
     private PdfDocument pdfDocument;
     private Document document;
     private final Map<String, Image> images;
+    /**
+     * 内联图片，键为图片内容摘要
+     */
+    private final Map<String, PdfImageXObject> inlineImages;
+    /**
+     * 条码，键为条码键，绘制好的 XObject 在本文档中重复使用
+     */
+    private final Map<String, PdfFormXObject> barcodes;
+    /**
+     * 文档级字体缓存，open() 时创建，close() 时释放
+     */
+    private PdfFontCache fontCache;
+    /**
+     * 文档级的图片处理选项，img 元素可以通过属性覆盖
+     */
+    private ImageOptions imageOptions = new ImageOptions();
+    /**
+     * 图片预取，没有预取时为 null
+     */
+    private ImagePrefetcher imagePrefetcher;
+
+    /**
+     * 逐行输出的表格，没有时为 null
+     */
+    private Table streamTable;
+    /**
+     * 逐行输出的表格是否已经加入文档
+     */
+    private boolean streamTableAdded;
+    /**
+     * 上次刷新之后添加的单元格数
+     */
+    private int streamTableCells;
 
     private final ISplitCharacters splitCharacters = (glyphLine, i) -> true;
 
@@ -66,24 +126,30 @@ public class PDFDoc extends TextDoc {
         super(outputStream);
         this.templateInputStream = templateInputStream;
 
-        pdfBlockDefaults = new ArrayList<>();
+        pdfBlockDefaults = new EnumMap<>(BlockType.class);
         images = new HashMap<>();
+        inlineImages = new HashMap<>();
+        barcodes = new HashMap<>();
 
         // 默认的块属性，应用程序可以通过 setBlockDefault() 来修改这些属性
-        pdfBlockDefaults.add(new PDFBlockDefault(BlockType.BLOCK_TITLE,
-                FONT_FAMILY_HEI, 18, FontStyle.BOLD,
+        addBlockDefault(new PDFBlockDefault(BlockType.BLOCK_TITLE,
+                FontRegistry.FAMILY_HEI, 18, FontStyle.BOLD,
                 TextAlignment.CENTER, 0.0f, 0.0f, 16.0f));
-        pdfBlockDefaults.add(new PDFBlockDefault(BlockType.BLOCK_CHAPTER,
-                FONT_FAMILY_SONG, 16, FontStyle.BOLD,
+        addBlockDefault(new PDFBlockDefault(BlockType.BLOCK_CHAPTER,
+                FontRegistry.FAMILY_SONG, 16, FontStyle.BOLD,
                 TextAlignment.LEFT, 0.0f, 14.0f, 0.0f));
-        pdfBlockDefaults.add(new PDFBlockDefault(BlockType.BLOCK_SECTION,
-                FONT_FAMILY_SONG, 14, FontStyle.BOLD,
+        addBlockDefault(new PDFBlockDefault(BlockType.BLOCK_SECTION,
+                FontRegistry.FAMILY_SONG, 14, FontStyle.BOLD,
                 TextAlignment.LEFT, 0.0f, 12.0f, 0.0f));
-        pdfBlockDefaults.add(new PDFBlockDefault(BlockType.BLOCK_PARA,
-                FONT_FAMILY_SONG, 12, FontStyle.NONE,
+        addBlockDefault(new PDFBlockDefault(BlockType.BLOCK_PARA,
+                FontRegistry.FAMILY_SONG, 12, FontStyle.NONE,
                 TextAlignment.LEFT, 22.0f, 6.0f, 0.0f));
     }
 
+    private void addBlockDefault(PDFBlockDefault blockDefault) {
+        pdfBlockDefaults.put(blockDefault.blockType, blockDefault);
+    }
+
     private void addMetaInfo() {
         PdfDocumentInfo info = pdfDocument.getDocumentInfo();
 //        info.setTitle("TextPdf 合同");
@@ -99,10 +165,19 @@ public class PDFDoc extends TextDoc {
     public boolean open() {
         try {
             final PdfWriter writer = new PdfWriter(outputStream);
+            fontCache = new PdfFontCache();
 
-            // 有模板
-            if (this.templateInputStream != null) {
-                pdfDocument = new PdfDocument(new PdfReader(templateInputStream), writer);
+            // 有模板，模板只解析一次，每个文档在共享的模板内容上创建自己的 PdfReader
+            if (template == null && templateInputStream != null) {
+                template = TemplateStore.get(templateInputStream);
+            }
+            if (template != null && templateBackgroundPage > 0) {
+                pdfDocument = new PdfDocument(writer);
+                TemplateBackground background = TemplateBackground.install(
+                        template, templateBackgroundPage, pdfDocument);
+                pdfDocument.setDefaultPageSize(new PageSize(background.getPageSize()));
+            } else if (template != null) {
+                pdfDocument = new PdfDocument(template.newReader(), writer);
             } else {
                 pdfDocument = new PdfDocument(writer);
             }
@@ -121,7 +196,13 @@ public class PDFDoc extends TextDoc {
 
     @Override
     public void close() {
+        if (fontCache != null) {
+            fontCache.flush();
+        }
         pdfDocument.close();
+        if (fontCache != null) {
+            fontCache.clear();
+        }
     }
 
     @Override
@@ -148,6 +229,44 @@ public class PDFDoc extends TextDoc {
         }
     }
 
+    /**
+     * 设置图片处理选项，参考 {@link ImageProcessor}
+     *
+     * @param imageOptions 图片处理选项
+     */
+    public void setImageOptions(ImageOptions imageOptions) {
+        if (imageOptions != null) {
+            this.imageOptions = imageOptions;
+        }
+    }
+
+    /**
+     * 设置模板，通常来自 {@link TemplateStore}
+     *
+     * @param template 模板
+     */
+    public void setTemplate(TemplatePdf template) {
+        this.template = template;
+    }
+
+    /**
+     * 设置以模板的某一页作为每一页的背景
+     *
+     * @param page 模板页码，从 1 开始，0 表示在模板上追加内容(默认)
+     */
+    public void setTemplateBackgroundPage(int page) {
+        this.templateBackgroundPage = page;
+    }
+
+    /**
+     * 设置图片预取，排版图片时优先使用预取的结果
+     *
+     * @param imagePrefetcher 图片预取
+     */
+    public void setImagePrefetcher(ImagePrefetcher imagePrefetcher) {
+        this.imagePrefetcher = imagePrefetcher;
+    }
+
     /**
      * 设置块默认属性
      * 这个函数一次性设置所有的块默认属性，如果需要单独设置某一个属性，
@@ -163,17 +282,15 @@ public class PDFDoc extends TextDoc {
     public void setBlockDefault(BlockType blockType, int fontFamily,
                                 int fontSize, FontStyle fontStyle, TextAlignment alignment, float indent,
                                 float lineSpaceBefore, float lineSpaceAfter) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.fontFamily = fontFamily;
-                block.fontSize = fontSize;
-                block.fontStyle = fontStyle;
-                block.alignment = alignment;
-                block.indent = indent;
-                block.lineSpaceBefore = lineSpaceBefore;
-                block.lineSpaceAfter = lineSpaceAfter;
-                break;
-            }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.fontFamily = familyName(fontFamily);
+            block.fontSize = fontSize;
+            block.fontStyle = fontStyle;
+            block.alignment = alignment;
+            block.indent = indent;
+            block.lineSpaceBefore = lineSpaceBefore;
+            block.lineSpaceAfter = lineSpaceAfter;
         }
     }
 
@@ -184,12 +301,31 @@ public class PDFDoc extends TextDoc {
      * @param fontFamily 字体
      */
     public void setBlockDefaultFontFamily(BlockType blockType, int fontFamily) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.fontFamily = fontFamily;
-                break;
-            }
+        setBlockDefaultFontFamily(blockType, familyName(fontFamily));
+    }
+
+    /**
+     * 设置块的默认字体家族
+     *
+     * @param blockType  类型
+     * @param fontFamily 字体名称，必须已经在 {@link FontRegistry} 中注册
+     */
+    public void setBlockDefaultFontFamily(BlockType blockType, String fontFamily) {
+        if (!FontRegistry.contains(fontFamily)) {
+            System.err.println("Font family '" + fontFamily + "' unknown!");
+            return;
         }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.fontFamily = fontFamily;
+        }
+    }
+
+    /**
+     * 将早期版本的整数字体家族映射为字体名称
+     */
+    private static String familyName(int fontFamily) {
+        return fontFamily == FONT_FAMILY_HEI ? FontRegistry.FAMILY_HEI : FontRegistry.FAMILY_SONG;
     }
 
     /**
@@ -199,11 +335,9 @@ public class PDFDoc extends TextDoc {
      * @param fontSize  字体大小
      */
     public void setBlockDefaultFontSize(BlockType blockType, int fontSize) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.fontSize = fontSize;
-                break;
-            }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.fontSize = fontSize;
         }
     }
 
@@ -214,11 +348,9 @@ public class PDFDoc extends TextDoc {
      * @param fontStyle 字体样式
      */
     public void setBlockDefaultFontStyle(BlockType blockType, FontStyle fontStyle) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.fontStyle = fontStyle;
-                break;
-            }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.fontStyle = fontStyle;
         }
     }
 
@@ -229,11 +361,9 @@ public class PDFDoc extends TextDoc {
      * @param alignment 对齐方式
      */
     public void setBlockDefaultAlignment(BlockType blockType, TextAlignment alignment) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.alignment = alignment;
-                break;
-            }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.alignment = alignment;
         }
     }
 
@@ -244,11 +374,9 @@ public class PDFDoc extends TextDoc {
      * @param indent    首航缩进大小
      */
     public void setBlockDefaultIndent(BlockType blockType, float indent) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.indent = indent;
-                break;
-            }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.indent = indent;
         }
     }
 
@@ -259,11 +387,9 @@ public class PDFDoc extends TextDoc {
      * @param lineSpaceBefore 行上面空行大小
      */
     public void setBlockDefaultLineSpaceBefore(BlockType blockType, float lineSpaceBefore) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.lineSpaceBefore = lineSpaceBefore;
-                break;
-            }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.lineSpaceBefore = lineSpaceBefore;
         }
     }
 
@@ -274,70 +400,46 @@ public class PDFDoc extends TextDoc {
      * @param lineSpaceAfter 下面空行大小
      */
     public void setBlockDefaultLineSpaceAfter(BlockType blockType, float lineSpaceAfter) {
-        for (PDFBlockDefault block : pdfBlockDefaults) {
-            if (block.blockType == blockType) {
-                block.lineSpaceAfter = lineSpaceAfter;
-                break;
-            }
+        PDFBlockDefault block = pdfBlockDefaults.get(blockType);
+        if (block != null) {
+            block.lineSpaceAfter = lineSpaceAfter;
         }
     }
 
     /**
      * 根据 TextChunk 中字体相关的属性来设置 Chunk 的字体，字体包括：
-     * 家族(黑体或宋体)、大小、修饰(粗体、斜体、下划线等等)。
+     * 家族(参考 FontRegistry)、大小、修饰(粗体、斜体、下划线等等)。
      *
-     * @param textChunk    TextChunk 对象，保存了字体的属性
+     * @param style        TextChunk 解析好的样式
      * @param chunk        PDF Chunk 对象
      * @param blockDefault
      * @throws IOException
      */
-    private void setChunkFont(TextChunk textChunk, Text chunk,
+    private void setChunkFont(ChunkStyle style, Text chunk,
                               PDFBlockDefault blockDefault) throws IOException {
-        Map<String, String> attrs = textChunk.getAttrs();
-
-        int fontFamily = blockDefault.fontFamily;
-        int fontSize = blockDefault.fontSize;
-        FontStyle font_style = blockDefault.fontStyle;
-        PdfFont pdfFont = null;
+        String fontFamily = blockDefault.fontFamily;
+        int fontSize = style.fontSize > 0 ? style.fontSize : blockDefault.fontSize;
 
-        String value = attrs.get("font-family");
-        if (value != null) {
-            if ("heiti".equalsIgnoreCase(value) ||
-                    "hei".equalsIgnoreCase(value)) {
-                fontFamily = FONT_FAMILY_HEI;
-            } else if ("songti".equalsIgnoreCase(value) ||
-                    "song".equalsIgnoreCase(value)) {
-                fontFamily = FONT_FAMILY_SONG;
+        if (style.fontFamily != null) {
+            if (FontRegistry.contains(style.fontFamily)) {
+                fontFamily = style.fontFamily;
             } else {
-                System.err.println("Font family '" + value + "' unknown!");
+                System.err.println("Font family '" + style.fontFamily + "' unknown!");
             }
         }
 
-        value = attrs.get("font-size");
-        if (value != null) {
-            try {
-                fontSize = Integer.parseInt(value);
-            } catch (Exception ex) {
-                System.err.println("Font size '" + value + "' invalid.");
+        if (style.fontFlags != ChunkStyle.INHERIT) {
+            if ((style.fontFlags & ChunkStyle.BOLD) != 0) {
+                chunk.setBold();
             }
-        }
-
-        value = attrs.get("font-style");
-        if (value != null) {
-
-            String[] styles = value.split(",");
-            for (String style : styles) {
-                String label = style.trim();
-                if ("bold".equalsIgnoreCase(label)) {
-                    chunk.setBold();
-                } else if ("italic".equalsIgnoreCase(label)) {
-                    chunk.setItalic();
-                } else if ("underline".equalsIgnoreCase(label)) {
-                    chunk.setUnderline();
-                }
+            if ((style.fontFlags & ChunkStyle.ITALIC) != 0) {
+                chunk.setItalic();
+            }
+            if ((style.fontFlags & ChunkStyle.UNDERLINE) != 0) {
+                chunk.setUnderline();
             }
         } else {
-            switch (font_style) {
+            switch (blockDefault.fontStyle) {
                 case BOLD:
                     chunk.setBold();
                     break;
@@ -354,18 +456,8 @@ public class PDFDoc extends TextDoc {
             }
         }
 
-        switch (fontFamily) {
-            case FONT_FAMILY_HEI:
-                pdfFont = PdfFontFactory.createFont("font/SIMHEI.TTF",
-                        PdfEncodings.IDENTITY_H, PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED);
-                break;
-            case FONT_FAMILY_SONG:
-                pdfFont = PdfFontFactory.createFont("font/SIMSUN.TTC,0",
-                        PdfEncodings.IDENTITY_H, PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED);
-                break;
-            default:
-                break;
-        }
+        PdfFont pdfFont = fontCache.getFamilyFont(fontFamily,
+                PdfEncodings.IDENTITY_H, PdfFontFactory.EmbeddingStrategy.PREFER_EMBEDDED);
         chunk.setFontSize(fontSize);
         chunk.setFont(pdfFont);
     }
@@ -379,115 +471,92 @@ public class PDFDoc extends TextDoc {
      */
     private Text formatChunk(TextChunk text_chunk,
                              PDFBlockDefault blockDefault) {
-        Text chunk = new Text("");
-        Map<String, String> attrs = text_chunk.getAttrs();
-
-        String value = attrs.get("super");
-        if ("true".equalsIgnoreCase(value)) {
-            chunk.setTextRise(6.0f);
-            if (!attrs.containsKey("font-size")) {
-                attrs.put("font-size", "8");
-            }
-        }
-        value = attrs.get("sub");
-        if ("true".equalsIgnoreCase(value)) {
-            chunk.setTextRise(-3.0f);
-            if (!attrs.containsKey("font-size")) {
-                attrs.put("font-size", "8");
-            }
-        }
+        ChunkStyle style = text_chunk.getStyle();
+        return formatText(padContents(text_chunk.getContents(), style),
+                style, isBlankValue(text_chunk, style), blockDefault);
+    }
 
-        String contents = text_chunk.getContents();
+    /**
+     * 根据样式生成 PDF Text 对象
+     *
+     * @param contents     文字内容，已经按 minlen 补齐
+     * @param style        样式
+     * @param blank        是否为没有内容的 minlen 节点，这种节点用下划线表示填写位置
+     * @param blockDefault 块默认类型
+     * @return PDF Text
+     */
+    private Text formatText(String contents, ChunkStyle style, boolean blank,
+                            PDFBlockDefault blockDefault) {
+        Text chunk = new Text(contents);
 
-        value = text_chunk.getAttrs().get("minlen");
-        if (value != null && value.length() > 0) {
-            if (contents.length() == 0) {
-                chunk.setUnderline(1.0f, -4.0f);
-            }
-            try {
-                int minlen = Integer.parseInt(value);
-                int currlen = 0;
-                for (int i = 0; i < contents.length(); i++) {
-                    char ch = contents.charAt(i);
-                    if (ch < 127) {
-                        currlen += 1;
-                    } else {
-                        currlen += 2;
-                    }
-                }
-                if (currlen < minlen) {
-                    StringBuilder builder = new StringBuilder(contents);
-                    for (; currlen < minlen; currlen++) {
-                        builder.append(' ');
-                    }
-                    contents = builder.toString();
-                }
-            } catch (Exception ex) {
-                ex.printStackTrace();
-                System.err.println("minlen need a integer value.");
-            }
+        if (style.textRise != 0) {
+            chunk.setTextRise(style.textRise);
+        }
+        if (blank) {
+            chunk.setUnderline(1.0f, -4.0f);
         }
-        chunk.setText(contents);
         try {
-            setChunkFont(text_chunk, chunk, blockDefault);
+            setChunkFont(style, chunk, blockDefault);
         } catch (IOException ignored) {
 
         }
         return chunk;
     }
 
+    private static boolean isBlankValue(TextChunk textChunk, ChunkStyle style) {
+        return style.minlen >= 0 && textChunk.getContents().length() == 0;
+    }
+
+    /**
+     * 按 minlen 属性用空格补齐内容，非 ASCII 字符按两个长度计算
+     */
+    private static String padContents(String contents, ChunkStyle style) {
+        if (style.minlen <= 0) {
+            return contents;
+        }
+        int currlen = 0;
+        for (int i = 0; i < contents.length(); i++) {
+            char ch = contents.charAt(i);
+            if (ch < 127) {
+                currlen += 1;
+            } else {
+                currlen += 2;
+            }
+        }
+        if (currlen >= style.minlen) {
+            return contents;
+        }
+        StringBuilder builder = new StringBuilder(contents);
+        for (; currlen < style.minlen; currlen++) {
+            builder.append(' ');
+        }
+        return builder.toString();
+    }
+
     private void formatParagraph(Paragraph para, List<TextChunk> chunkList) {
         // 用第一个节点来设置块的段落属性
         TextChunk text_chunk = chunkList.get(0);
         if (text_chunk != null) {
-            Map<String, String> attrs = text_chunk.getAttrs();
+            ChunkStyle style = text_chunk.getStyle();
 
             // 设置段落对齐方式
-            String value = attrs.get("align");
-            if (value != null) {
-                if ("left".equalsIgnoreCase(value)) {
-                    para.setTextAlignment(TextAlignment.LEFT);
-                } else if ("center".equalsIgnoreCase(value)) {
-                    para.setTextAlignment(TextAlignment.CENTER);
-                } else if ("right".equalsIgnoreCase(value)) {
-                    para.setTextAlignment(TextAlignment.RIGHT);
-                } else {
-                    System.err.println("Block alignment type '"
-                            + value + "' unknown.");
-                }
+            if (style.alignment != null) {
+                para.setTextAlignment(style.alignment);
+            } else if (style.unknownAlignment != null) {
+                System.err.println("Block alignment type '"
+                        + style.unknownAlignment + "' unknown.");
             }
             // 设置段落缩进
-            value = attrs.get("indent");
-            if (value != null) {
-                try {
-                    float indent = Float.parseFloat(value);
-                    para.setFirstLineIndent(indent);
-                } catch (Exception ex) {
-                    System.err.println(
-                            "Indent attribute must has a float value");
-                }
+            if (style.indent != null) {
+                para.setFirstLineIndent(style.indent);
             }
             // 设置段落前空间
-            value = attrs.get("space-before");
-            if (value != null) {
-                try {
-                    float space = Float.parseFloat(value);
-                    para.setMarginTop(space);
-                } catch (Exception ex) {
-                    System.err.println(
-                            "space-before attribute must has a float value");
-                }
+            if (style.spaceBefore != null) {
+                para.setMarginTop(style.spaceBefore);
             }
             // 设置段落后空间
-            value = attrs.get("space-after");
-            if (value != null) {
-                try {
-                    float space = Float.parseFloat(value);
-                    para.setMarginBottom(space);
-                } catch (Exception ex) {
-                    System.err.println(
-                            "space-after attribute must has a float value");
-                }
+            if (style.spaceAfter != null) {
+                para.setMarginBottom(style.spaceAfter);
             }
         }
     }
@@ -502,10 +571,28 @@ public class PDFDoc extends TextDoc {
     private void addParagraph(BlockType blockType, List<TextChunk> chunkList, PDFBlockDefault pdfBlockDefault) {
         Paragraph para = new Paragraph();
 
+        // 相邻的样式相同的节点(例如替换后的值和后面的文字)合并为一个 Text，减少排版对象
+        ChunkStyle runStyle = null;
+        boolean runBlank = false;
+        StringBuilder run = new StringBuilder();
         for (TextChunk textChunk : chunkList) {
-            Text chunk = formatChunk(textChunk, pdfBlockDefault);
-            chunk.setSplitCharacters(splitCharacters);
-            para.add(chunk);
+            ChunkStyle style = textChunk.getStyle();
+            boolean blank = isBlankValue(textChunk, style);
+            String contents = padContents(textChunk.getContents(), style);
+            if (runStyle != null && !blank && !runBlank && style.equals(runStyle)) {
+                run.append(contents);
+                continue;
+            }
+            if (runStyle != null) {
+                addText(para, run.toString(), runStyle, runBlank, pdfBlockDefault);
+            }
+            runStyle = style;
+            runBlank = blank;
+            run.setLength(0);
+            run.append(contents);
+        }
+        if (runStyle != null) {
+            addText(para, run.toString(), runStyle, runBlank, pdfBlockDefault);
         }
         para.setMarginTop(pdfBlockDefault.lineSpaceBefore);
         para.setMarginBottom(pdfBlockDefault.lineSpaceAfter);
@@ -516,6 +603,13 @@ public class PDFDoc extends TextDoc {
         document.add(para);
     }
 
+    private void addText(Paragraph para, String contents, ChunkStyle style,
+                         boolean blank, PDFBlockDefault blockDefault) {
+        Text chunk = formatText(contents, style, blank, blockDefault);
+        chunk.setSplitCharacters(splitCharacters);
+        para.add(chunk);
+    }
+
     /**
      * 添加一块内容到 PDF 文档，块可以为 Title、Section、等等，
      * 参考类前面的数组定义
@@ -543,11 +637,9 @@ public class PDFDoc extends TextDoc {
         }
         BlockType blockType = blockTypes.get(lowerBlockName);
 
-        for (PDFBlockDefault pdfBlockDefault : pdfBlockDefaults) {
-            if (pdfBlockDefault.blockType == blockType) {
-                addParagraph(blockType, chunkList, pdfBlockDefault);
-                break;
-            }
+        PDFBlockDefault pdfBlockDefault = pdfBlockDefaults.get(blockType);
+        if (pdfBlockDefault != null) {
+            addParagraph(blockType, chunkList, pdfBlockDefault);
         }
     }
 
@@ -591,6 +683,9 @@ public class PDFDoc extends TextDoc {
 
     /**
      * 添加一个图片
+     * <p>
+     * 支持 width、height 属性(单位为 pt)指定渲染尺寸，以及 dpi、max-pixels、
+     * quality 属性控制嵌入之前的缩小和重新压缩。
      *
      * @param attrs 属性
      */
@@ -602,10 +697,27 @@ public class PDFDoc extends TextDoc {
                 System.err.println("img missing src attribute.");
                 return;
             }
-            Image img = images.get(src);
+            float width = parseSize(attrs.getValue("width"));
+            float height = parseSize(attrs.getValue("height"));
+            ImageOptions options = imageOptions.merge(attrs);
+
+            // 解码后的图片由所有文档共享，本文档只创建一次 Image(XObject)
+            String key = ImagePrefetcher.key(src, options, width, height);
+            Image img = images.get(key);
             if (img == null) {
-                img = new Image(ImageDataFactory.create(src));
-                images.put(src, img);
+                ImageProcessor.ProcessedImage processed = null;
+                if (imagePrefetcher != null) {
+                    processed = imagePrefetcher.get(src, options, width, height);
+                }
+                if (processed == null) {
+                    processed = ImageProcessor.load(src, options, width, height);
+                }
+                img = new Image(processed.getData());
+                if (width > 0 || height > 0 || processed.isResampled()) {
+                    img.setWidth(processed.getWidth());
+                    img.setHeight(processed.getHeight());
+                }
+                images.put(key, img);
             }
 
             document.add(img);
@@ -614,7 +726,78 @@ public class PDFDoc extends TextDoc {
         }
     }
 
-    private Table createTable(Map<String, String> attrs) {
+    /**
+     * 添加数据源中的内联图片
+     * <p>
+     * 内容相同(摘要相同)的图片在本文档中只嵌入一次，解码后的图片由所有文档共享。
+     *
+     * @param attrs 属性
+     * @param image 图片数据
+     */
+    @Override
+    public void addImage(Attributes attrs, InlineImage image) {
+        try {
+            String key = "sha1:" + image.getHash();
+            PdfImageXObject xObject = inlineImages.get(key);
+            if (xObject == null) {
+                xObject = new PdfImageXObject(ImageDataCache.get(key, null,
+                        () -> ImageDataFactory.create(image.getData())));
+                inlineImages.put(key, xObject);
+            }
+            // 共享同一个 XObject，尺寸属于各自的 Image 元素
+            Image element = new Image(xObject);
+            float width = parseSize(attrs.getValue("width"));
+            float height = parseSize(attrs.getValue("height"));
+            if (width > 0) {
+                element.setWidth(width);
+            }
+            if (height > 0) {
+                element.setHeight(height);
+            }
+            document.add(element);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 添加二维码或者条码
+     * <p>
+     * 条码绘制为矢量图形，内容相同的条码在本文档中只绘制一次。
+     * 支持 width、height(单位为 pt)、ecc(QR 码纠错级别)以及 margin(空白模块数)属性。
+     *
+     * @param format   条码格式
+     * @param attrs    属性
+     * @param contents 条码内容
+     */
+    @Override
+    public void addBarcode(BarcodeFormat format, Attributes attrs, String contents) {
+        if (contents == null) {
+            return;
+        }
+        try {
+            String ecc = attrs.getValue("ecc");
+            int margin = parseMargin(attrs.getValue("margin"));
+            String key = BarcodeCache.key(format, contents, ecc, margin);
+            PdfFormXObject xObject = barcodes.get(key);
+            if (xObject == null) {
+                BitMatrix matrix = BarcodeCache.get(format, contents, ecc, margin);
+                xObject = BarcodeDrawer.createFormXObject(matrix, pdfDocument);
+                barcodes.put(key, xObject);
+            }
+            // XObject 的边框就是矩阵的大小，命中时不必再取矩阵
+            float[] size = BarcodeDrawer.displaySize(xObject.getWidth(), xObject.getHeight(),
+                    parseSize(attrs.getValue("width")), parseSize(attrs.getValue("height")));
+            Image element = new Image(xObject);
+            element.setWidth(size[0]);
+            element.setHeight(size[1]);
+            document.add(element);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Table createTable(Map<String, String> attrs, boolean largeTable) {
         float width = 100;
         int[] columns = null;
         Table table;
@@ -632,9 +815,9 @@ public class PDFDoc extends TextDoc {
             }
         }
         if (columns == null) {
-            table = new Table(UnitValue.createPercentArray(1));
+            table = new Table(UnitValue.createPercentArray(1), largeTable);
         } else {
-            table = new Table(UnitValue.createPercentArray(columns.length));
+            table = new Table(UnitValue.createPercentArray(columns.length), largeTable);
 
         }
 
@@ -659,30 +842,14 @@ public class PDFDoc extends TextDoc {
         Paragraph phrase = new Paragraph();
         phrase.add(chunk);
 
-        Map<String, String> attrs = textChunk.getAttrs();
-        String value = attrs.get("colspan");
-        int colspan = 1;
-        if (value != null) {
-            try {
-                colspan = Integer.parseInt(value);
-            } catch (Exception ex) {
-                System.err.println("colspan must has a integer value");
-            }
-        }
-        Cell cell = new Cell(1, colspan);
+        ChunkStyle style = textChunk.getStyle();
+        Cell cell = new Cell(1, style.colspan);
         cell.add(phrase);
         cell.setVerticalAlignment(VerticalAlignment.MIDDLE);
         cell.setPadding(5);
 
-        value = attrs.get("align");
-        if (value != null) {
-            if ("left".equalsIgnoreCase(value)) {
-                cell.setTextAlignment(TextAlignment.LEFT);
-            } else if ("center".equalsIgnoreCase(value)) {
-                cell.setTextAlignment(TextAlignment.CENTER);
-            } else if ("right".equalsIgnoreCase(value)) {
-                cell.setTextAlignment(TextAlignment.RIGHT);
-            }
+        if (style.alignment != null) {
+            cell.setTextAlignment(style.alignment);
         }
         return cell;
     }
@@ -692,14 +859,8 @@ public class PDFDoc extends TextDoc {
         if (!isOpen() || table == null) {
             return;
         }
-        PDFBlockDefault blockDefault = null;
-        for (PDFBlockDefault def : this.pdfBlockDefaults) {
-            if (def.blockType == BlockType.BLOCK_PARA) {
-                blockDefault = def;
-                break;
-            }
-        }
-        Table pdfTable = createTable(table.getAttrs());
+        PDFBlockDefault blockDefault = pdfBlockDefaults.get(BlockType.BLOCK_PARA);
+        Table pdfTable = createTable(table.getAttrs(), false);
 
         for (TextChunk textChunk : table.getCells()) {
             pdfTable.addCell(createTableCell(textChunk, blockDefault));
@@ -707,6 +868,47 @@ public class PDFDoc extends TextDoc {
         document.add(pdfTable);
     }
 
+    /**
+     * 使用 iText 的大表格，单元格定期刷新到文档，已经输出的行不再占用内存
+     */
+    @Override
+    public void beginTable(TextTable table) {
+        if (!isOpen() || table == null) {
+            return;
+        }
+        streamTable = createTable(table.getAttrs(), true);
+        streamTableAdded = false;
+        streamTableCells = 0;
+    }
+
+    @Override
+    public void addTableCells(List<TextChunk> cells) {
+        if (streamTable == null || cells.isEmpty()) {
+            return;
+        }
+        if (!streamTableAdded) {
+            document.add(streamTable);
+            streamTableAdded = true;
+        }
+        PDFBlockDefault blockDefault = pdfBlockDefaults.get(BlockType.BLOCK_PARA);
+        for (TextChunk textChunk : cells) {
+            streamTable.addCell(createTableCell(textChunk, blockDefault));
+        }
+        streamTableCells += cells.size();
+        if (streamTableCells >= TABLE_FLUSH_CELLS) {
+            streamTable.flush();
+            streamTableCells = 0;
+        }
+    }
+
+    @Override
+    public void endTable() {
+        if (streamTable != null && streamTableAdded) {
+            streamTable.complete();
+        }
+        streamTable = null;
+    }
+
 }
 
 
@@ -715,7 +917,7 @@ public class PDFDoc extends TextDoc {
  */
 class PDFBlockDefault {
     protected BlockType blockType;
-    protected int fontFamily;
+    protected String fontFamily;
     protected int fontSize;
     protected FontStyle fontStyle;
     protected TextAlignment alignment;
@@ -723,7 +925,7 @@ class PDFBlockDefault {
     protected float lineSpaceBefore;
     protected float lineSpaceAfter;
 
-    public PDFBlockDefault(BlockType blockType, int family,
+    public PDFBlockDefault(BlockType blockType, String family,
                            int size, FontStyle style, TextAlignment alignment, float indent,
                            float lineSpaceBefore, float lineSpaceAfter) {
         this.blockType = blockType;
@@ -0,0 +1,42 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import java.util.Map;
+
+/**
+ * repeat 中当前元素的数据源
+ * <p>
+ * 别名取得元素本身，其它 id 先作为元素的属性查找，找不到时交给外层数据源。
+ */
+final class ScopedDataSource implements DataSource {
+    private final Object item;
+    private final String alias;
+    private final DataSource parent;
+
+    ScopedDataSource(Object item, String alias, DataSource parent) {
+        this.item = item;
+        this.alias = alias;
+        this.parent = parent;
+    }
+
+    @Override
+    public Object get(String id) {
+        if (id.equals(alias)) {
+            return item;
+        }
+        if (item instanceof Map || (item != null && BeanAccessor.isBean(item))) {
+            Object value = ValuePath.step(item, id);
+            if (value != null) {
+                return value;
+            }
+        }
+        return parent == null ? null : parent.get(id);
+    }
+}
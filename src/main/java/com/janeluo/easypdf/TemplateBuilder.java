@@ -0,0 +1,355 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.google.zxing.BarcodeFormat;
+import com.itextpdf.kernel.geom.PageSize;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 通过代码构建模板，不需要拼接 XML
+ * <p>
+ * 构建结果与 XML 模板编译的结果相同，可以生成 PDF 和 HTML，可以保存为二进制格式，
+ * 值节点在生成时从数据源填充。例如：
+ * <pre>
+ * CompiledTemplate template = TemplateBuilder.create()
+ *         .title("发票")
+ *         .para(p -&gt; p.text("客户：").value("customer.name"))
+ *         .table(new int[]{3, 1}, t -&gt; t.cell("项目").cell("金额"))
+ *         .build();
+ * template.render(new PDFDoc(null, out), data);
+ * </pre>
+ *
+ * @author janeluo
+ */
+public final class TemplateBuilder {
+    private final List<TemplateOp> ops = new ArrayList<>();
+
+    private TemplateBuilder() {
+    }
+
+    public static TemplateBuilder create() {
+        return new TemplateBuilder();
+    }
+
+    /**
+     * 设置页面大小并开始新的一页
+     */
+    public TemplateBuilder page(PageSize pageSize) {
+        ops.add(new PageOp(pageSize, null));
+        return this;
+    }
+
+    /**
+     * 设置页面大小、边距并开始新的一页
+     */
+    public TemplateBuilder page(PageSize pageSize, int left, int right, int top, int bottom) {
+        ops.add(new PageOp(pageSize, new int[]{left, right, top, bottom}));
+        return this;
+    }
+
+    public TemplateBuilder pageBreak() {
+        ops.add(new NewPageOp());
+        return this;
+    }
+
+    public TemplateBuilder title(String text) {
+        return block("title", null, b -> b.text(text));
+    }
+
+    public TemplateBuilder title(TextStyle style, Consumer<Block> content) {
+        return block("title", style, content);
+    }
+
+    public TemplateBuilder chapter(String text) {
+        return block("chapter", null, b -> b.text(text));
+    }
+
+    public TemplateBuilder chapter(TextStyle style, Consumer<Block> content) {
+        return block("chapter", style, content);
+    }
+
+    public TemplateBuilder section(String text) {
+        return block("section", null, b -> b.text(text));
+    }
+
+    public TemplateBuilder section(TextStyle style, Consumer<Block> content) {
+        return block("section", style, content);
+    }
+
+    public TemplateBuilder para(String text) {
+        return block("para", null, b -> b.text(text));
+    }
+
+    public TemplateBuilder para(Consumer<Block> content) {
+        return block("para", null, content);
+    }
+
+    public TemplateBuilder para(TextStyle style, Consumer<Block> content) {
+        return block("para", style, content);
+    }
+
+    private TemplateBuilder block(String blockName, TextStyle style, Consumer<Block> content) {
+        Block block = new Block(style);
+        content.accept(block);
+        if (block.chunks.isEmpty()) {
+            // 与 XML 模板相同，空段落使用一个空格占位
+            block.text(" ");
+        }
+        ops.add(new BlockOp(blockName, block.chunks));
+        return this;
+    }
+
+    /**
+     * 水平线条
+     *
+     * @param width   线条厚度
+     * @param percent 线条宽度，百分比
+     */
+    public TemplateBuilder hrule(int width, int percent) {
+        ops.add(new HruleOp(attributes("width", String.valueOf(width),
+                "percent", String.valueOf(percent))));
+        return this;
+    }
+
+    /**
+     * 图片文件
+     *
+     * @param src    图片路径
+     * @param width  渲染宽度，0 表示按比例计算
+     * @param height 渲染高度，0 表示按比例计算
+     */
+    public TemplateBuilder image(String src, float width, float height) {
+        ops.add(new ImageOp(attributes("src", src, "width", size(width), "height", size(height))));
+        return this;
+    }
+
+    /**
+     * 数据源中的内联图片
+     *
+     * @param id     数据路径，值为 base64 字符串
+     * @param width  渲染宽度，0 表示按比例计算
+     * @param height 渲染高度，0 表示按比例计算
+     */
+    public TemplateBuilder imageValue(String id, float width, float height) {
+        ops.add(new ImageOp(attributes("id", id, "width", size(width), "height", size(height))));
+        return this;
+    }
+
+    /**
+     * 内容固定的二维码
+     */
+    public TemplateBuilder qrcode(String contents, float width) {
+        ops.add(new BarcodeOp(BarcodeFormat.QR_CODE, attributes("value", contents, "width", size(width))));
+        return this;
+    }
+
+    /**
+     * 内容来自数据源的二维码
+     */
+    public TemplateBuilder qrcodeValue(String id, float width) {
+        ops.add(new BarcodeOp(BarcodeFormat.QR_CODE, attributes("id", id, "width", size(width))));
+        return this;
+    }
+
+    /**
+     * 内容固定的条码
+     */
+    public TemplateBuilder barcode(BarcodeFormat format, String contents, float width, float height) {
+        ops.add(new BarcodeOp(format, attributes("value", contents,
+                "width", size(width), "height", size(height))));
+        return this;
+    }
+
+    /**
+     * 内容来自数据源的条码
+     */
+    public TemplateBuilder barcodeValue(BarcodeFormat format, String id, float width, float height) {
+        ops.add(new BarcodeOp(format, attributes("id", id,
+                "width", size(width), "height", size(height))));
+        return this;
+    }
+
+    /**
+     * 表格，宽度为 100%
+     *
+     * @param columns 每列的宽度占比，同时确定列数
+     * @param content 单元格
+     */
+    public TemplateBuilder table(int[] columns, Consumer<Table> content) {
+        return table(columns, 0, content);
+    }
+
+    /**
+     * 表格
+     *
+     * @param columns 每列的宽度占比，同时确定列数
+     * @param width   百分比宽度，0 表示 100%
+     * @param content 单元格
+     */
+    public TemplateBuilder table(int[] columns, float width, Consumer<Table> content) {
+        TextTable table = new TextTable();
+        StringBuilder builder = new StringBuilder();
+        for (int column : columns) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(column);
+        }
+        table.addAttr("columns", builder.toString());
+        table.addAttr("width", size(width));
+        content.accept(new Table(table));
+        if (table.getCells().size() > 0) {
+            ops.add(new TableOp(table));
+        }
+        return this;
+    }
+
+    /**
+     * @return 构建好的模板，之后继续构建不影响已经返回的模板
+     */
+    public CompiledTemplate build() {
+        return new CompiledTemplate(ops);
+    }
+
+    /**
+     * 构建模板并生成文档
+     *
+     * @param doc  PDFDoc 或者 HTMLDoc，还没有打开
+     * @param data 数据源，可以为 null
+     * @throws IOException 生成失败
+     */
+    public void render(TextDoc doc, DataSource data) throws IOException {
+        build().render(doc, data);
+    }
+
+    private static AttributesImpl attributes(String... pairs) {
+        AttributesImpl attrs = new AttributesImpl();
+        for (int i = 0; i < pairs.length; i += 2) {
+            if (pairs[i + 1] != null) {
+                attrs.addAttribute("", pairs[i], pairs[i], "CDATA", pairs[i + 1]);
+            }
+        }
+        return attrs;
+    }
+
+    private static String size(float size) {
+        if (size <= 0) {
+            return null;
+        }
+        return size == (int) size ? String.valueOf((int) size) : String.valueOf(size);
+    }
+
+    private static TextChunk chunk(TextChunk parent, TextStyle style) {
+        TextChunk chunk = new TextChunk(parent);
+        if (style != null) {
+            chunk.addAttrs(style.attrs());
+        }
+        return chunk;
+    }
+
+    /**
+     * 块的内容
+     */
+    public static final class Block {
+        private final TextChunk block = new TextChunk();
+        private final List<TextChunk> chunks = new ArrayList<>();
+
+        private Block(TextStyle style) {
+            if (style != null) {
+                block.addAttrs(style.attrs());
+            }
+        }
+
+        public Block text(String text) {
+            return text(text, null);
+        }
+
+        public Block text(String text, TextStyle style) {
+            TextChunk chunk = chunk(block, style);
+            chunk.setContents(text == null ? "" : text);
+            chunks.add(chunk);
+            return this;
+        }
+
+        /**
+         * 值节点，生成时从数据源填充
+         *
+         * @param id 数据路径
+         */
+        public Block value(String id) {
+            return value(id, null);
+        }
+
+        public Block value(String id, TextStyle style) {
+            TextChunk chunk = chunk(block, style);
+            chunk.addAttr("id", id);
+            chunk.setIsValue(true);
+            chunk.setContents("");
+            if (style == null || !style.attrs().containsKey("font-style")) {
+                // 值节点取到值时默认加粗并加下划线
+                chunk.setValueFontStyle("bold,underline");
+            }
+            chunks.add(chunk);
+            return this;
+        }
+
+        /**
+         * 插入空格
+         */
+        public Block space(int count) {
+            StringBuilder builder = new StringBuilder(count);
+            for (int i = 0; i < count; i++) {
+                builder.append(' ');
+            }
+            return text(builder.toString());
+        }
+
+        /**
+         * 强制换行
+         */
+        public Block lineBreak() {
+            return text("\n");
+        }
+    }
+
+    /**
+     * 表格的单元格
+     */
+    public static final class Table {
+        private final TextTable table;
+
+        private Table(TextTable table) {
+            this.table = table;
+        }
+
+        public Table cell(String text) {
+            return cell(text, null, 1);
+        }
+
+        public Table cell(String text, TextStyle style) {
+            return cell(text, style, 1);
+        }
+
+        public Table cell(String text, TextStyle style, int colspan) {
+            TextChunk chunk = chunk(new TextChunk(), style);
+            if (colspan > 1) {
+                chunk.addAttr("colspan", String.valueOf(colspan));
+            }
+            chunk.setContents(text == null ? "" : text);
+            table.addCell(chunk);
+            return this;
+        }
+    }
+}
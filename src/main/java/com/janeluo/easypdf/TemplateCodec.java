@@ -0,0 +1,405 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.google.zxing.BarcodeFormat;
+import com.itextpdf.kernel.geom.PageSize;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后模板的二进制格式
+ * <p>
+ * 文件结构：
+ * <pre>
+ * 魔数 "EPDT"，版本(short)，保留(short)
+ * 字符串表：数量(int)，每个字符串为 UTF-8 字节数(int) + 字节
+ * 操作列表：数量(int)，每个操作为类型(byte) + 内容
+ * </pre>
+ * 操作中的字符串(属性名、属性值、文字内容)都保存为字符串表的序号，-1 表示 null，
+ * 相同的字符串只保存一次。属性保存原始的字符串，样式在读取后第一次使用时解析。格式变化时需要增加版本号。
+ * <p>
+ * 版本 2 增加了 repeat 和逐行输出的表格，repeat 的内容为嵌套的操作列表；版本 3 增加了 if，
+ * 保存表达式原文和两个分支的操作列表。旧版本的文件仍然可以读取。
+ */
+final class TemplateCodec {
+    static final byte[] MAGIC = {'E', 'P', 'D', 'T'};
+    static final short VERSION = 3;
+
+    private static final byte OP_PAGE = 1;
+    private static final byte OP_NEW_PAGE = 2;
+    private static final byte OP_HRULE = 3;
+    private static final byte OP_IMAGE = 4;
+    private static final byte OP_BARCODE = 5;
+    private static final byte OP_BLOCK = 6;
+    private static final byte OP_TABLE = 7;
+    private static final byte OP_TABLE_BEGIN = 8;
+    private static final byte OP_TABLE_CELLS = 9;
+    private static final byte OP_TABLE_END = 10;
+    private static final byte OP_REPEAT = 11;
+    private static final byte OP_IF = 12;
+
+    private static final int CHUNK_VALUE = 1;
+
+    private TemplateCodec() {
+    }
+
+    static void write(CompiledTemplate template, OutputStream stream) throws IOException {
+        // 先收集字符串表
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (TemplateOp op : template.ops()) {
+            collect(op, strings);
+        }
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(MAGIC);
+        out.writeShort(VERSION);
+        out.writeShort(0);
+        out.writeInt(strings.size());
+        for (String string : strings.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        writeOps(out, template.ops(), strings);
+        out.flush();
+    }
+
+    static CompiledTemplate read(ByteBuffer buffer) throws IOException {
+        try {
+            byte[] magic = new byte[MAGIC.length];
+            buffer.get(magic);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (magic[i] != MAGIC[i]) {
+                    throw new IOException("Not a compiled template.");
+                }
+            }
+            short version = buffer.getShort();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Compiled template version " + version
+                        + " unsupported, please compile it again.");
+            }
+            buffer.getShort();
+
+            String[] strings = new String[count(buffer)];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[count(buffer)];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return new CompiledTemplate(readOps(buffer, strings));
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            throw new IOException("Compiled template corrupted.", e);
+        }
+    }
+
+    private static void collect(TemplateOp op, Map<String, Integer> strings) {
+        if (op instanceof HruleOp) {
+            collect(((HruleOp) op).attrs, strings);
+        } else if (op instanceof ImageOp) {
+            collect(((ImageOp) op).attrs, strings);
+        } else if (op instanceof BarcodeOp) {
+            intern(((BarcodeOp) op).format.name(), strings);
+            collect(((BarcodeOp) op).attrs, strings);
+        } else if (op instanceof BlockOp) {
+            intern(((BlockOp) op).blockName, strings);
+            for (TextChunk chunk : ((BlockOp) op).chunks) {
+                collect(chunk, strings);
+            }
+        } else if (op instanceof TableOp) {
+            TextTable table = ((TableOp) op).table;
+            collect(table.getAttrs(), strings);
+            for (TextChunk chunk : table.getCells()) {
+                collect(chunk, strings);
+            }
+        } else if (op instanceof TableBeginOp) {
+            collect(((TableBeginOp) op).table.getAttrs(), strings);
+        } else if (op instanceof TableCellsOp) {
+            for (TextChunk chunk : ((TableCellsOp) op).cells) {
+                collect(chunk, strings);
+            }
+        } else if (op instanceof RepeatOp) {
+            RepeatOp repeat = (RepeatOp) op;
+            intern(repeat.over.getPath(), strings);
+            intern(repeat.alias, strings);
+            for (TemplateOp child : repeat.body) {
+                collect(child, strings);
+            }
+        } else if (op instanceof IfOp) {
+            IfOp ifOp = (IfOp) op;
+            intern(ifOp.test.getSource(), strings);
+            for (TemplateOp child : ifOp.then) {
+                collect(child, strings);
+            }
+            for (TemplateOp child : ifOp.otherwise) {
+                collect(child, strings);
+            }
+        }
+    }
+
+    private static void collect(Attributes attrs, Map<String, Integer> strings) {
+        for (int i = 0; i < attrs.getLength(); i++) {
+            intern(attrs.getQName(i), strings);
+            intern(attrs.getValue(i), strings);
+        }
+    }
+
+    private static void collect(Map<String, String> attrs, Map<String, Integer> strings) {
+        for (Map.Entry<String, String> entry : attrs.entrySet()) {
+            intern(entry.getKey(), strings);
+            intern(entry.getValue(), strings);
+        }
+    }
+
+    private static void collect(TextChunk chunk, Map<String, Integer> strings) {
+        intern(chunk.getContents(), strings);
+        intern(chunk.getValueFontStyle(), strings);
+        collect(chunk.getAttributes(), strings);
+    }
+
+    private static void intern(String string, Map<String, Integer> strings) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+
+    private static int index(String string, Map<String, Integer> strings) {
+        return string == null ? -1 : strings.get(string);
+    }
+
+    private static void writeOps(DataOutputStream out, List<TemplateOp> ops,
+                                 Map<String, Integer> strings) throws IOException {
+        out.writeInt(ops.size());
+        for (TemplateOp op : ops) {
+            writeOp(out, op, strings);
+        }
+    }
+
+    private static void writeOp(DataOutputStream out, TemplateOp op,
+                                Map<String, Integer> strings) throws IOException {
+        if (op instanceof PageOp) {
+            PageOp page = (PageOp) op;
+            out.writeByte(OP_PAGE);
+            out.writeBoolean(page.pageSize != null);
+            if (page.pageSize != null) {
+                out.writeFloat(page.pageSize.getWidth());
+                out.writeFloat(page.pageSize.getHeight());
+            }
+            out.writeBoolean(page.margin != null);
+            if (page.margin != null) {
+                for (int margin : page.margin) {
+                    out.writeInt(margin);
+                }
+            }
+        } else if (op instanceof NewPageOp) {
+            out.writeByte(OP_NEW_PAGE);
+        } else if (op instanceof HruleOp) {
+            out.writeByte(OP_HRULE);
+            writeAttrs(out, ((HruleOp) op).attrs, strings);
+        } else if (op instanceof ImageOp) {
+            out.writeByte(OP_IMAGE);
+            writeAttrs(out, ((ImageOp) op).attrs, strings);
+        } else if (op instanceof BarcodeOp) {
+            out.writeByte(OP_BARCODE);
+            out.writeInt(index(((BarcodeOp) op).format.name(), strings));
+            writeAttrs(out, ((BarcodeOp) op).attrs, strings);
+        } else if (op instanceof BlockOp) {
+            BlockOp block = (BlockOp) op;
+            out.writeByte(OP_BLOCK);
+            out.writeInt(index(block.blockName, strings));
+            writeChunks(out, block.chunks, strings);
+        } else if (op instanceof TableOp) {
+            TextTable table = ((TableOp) op).table;
+            out.writeByte(OP_TABLE);
+            writeAttrs(out, table.getAttrs(), strings);
+            writeChunks(out, table.getCells(), strings);
+        } else if (op instanceof TableBeginOp) {
+            out.writeByte(OP_TABLE_BEGIN);
+            writeAttrs(out, ((TableBeginOp) op).table.getAttrs(), strings);
+        } else if (op instanceof TableCellsOp) {
+            out.writeByte(OP_TABLE_CELLS);
+            writeChunks(out, ((TableCellsOp) op).cells, strings);
+        } else if (op instanceof TableEndOp) {
+            out.writeByte(OP_TABLE_END);
+        } else if (op instanceof RepeatOp) {
+            RepeatOp repeat = (RepeatOp) op;
+            out.writeByte(OP_REPEAT);
+            out.writeInt(index(repeat.over.getPath(), strings));
+            out.writeInt(index(repeat.alias, strings));
+            writeOps(out, repeat.body, strings);
+        } else if (op instanceof IfOp) {
+            IfOp ifOp = (IfOp) op;
+            out.writeByte(OP_IF);
+            out.writeInt(index(ifOp.test.getSource(), strings));
+            writeOps(out, ifOp.then, strings);
+            writeOps(out, ifOp.otherwise, strings);
+        } else {
+            throw new IOException("Template operation " + op.getClass() + " unsupported.");
+        }
+    }
+
+    private static void writeAttrs(DataOutputStream out, Attributes attrs,
+                                   Map<String, Integer> strings) throws IOException {
+        out.writeInt(attrs.getLength());
+        for (int i = 0; i < attrs.getLength(); i++) {
+            out.writeInt(index(attrs.getQName(i), strings));
+            out.writeInt(index(attrs.getValue(i), strings));
+        }
+    }
+
+    private static void writeAttrs(DataOutputStream out, Map<String, String> attrs,
+                                   Map<String, Integer> strings) throws IOException {
+        out.writeInt(attrs.size());
+        for (Map.Entry<String, String> entry : attrs.entrySet()) {
+            out.writeInt(index(entry.getKey(), strings));
+            out.writeInt(index(entry.getValue(), strings));
+        }
+    }
+
+    private static void writeChunks(DataOutputStream out, List<TextChunk> chunks,
+                                    Map<String, Integer> strings) throws IOException {
+        out.writeInt(chunks.size());
+        for (TextChunk chunk : chunks) {
+            out.writeByte(chunk.isValue() ? CHUNK_VALUE : 0);
+            out.writeInt(index(chunk.getContents(), strings));
+            out.writeInt(index(chunk.getValueFontStyle(), strings));
+            writeAttrs(out, chunk.getAttributes(), strings);
+        }
+    }
+
+    private static List<TemplateOp> readOps(ByteBuffer buffer, String[] strings) throws IOException {
+        int count = count(buffer);
+        List<TemplateOp> ops = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ops.add(readOp(buffer, strings));
+        }
+        return ops;
+    }
+
+    private static TemplateOp readOp(ByteBuffer buffer, String[] strings) throws IOException {
+        byte type = buffer.get();
+        switch (type) {
+            case OP_PAGE:
+                PageSize pageSize = null;
+                int[] margin = null;
+                if (buffer.get() != 0) {
+                    pageSize = new PageSize(buffer.getFloat(), buffer.getFloat());
+                }
+                if (buffer.get() != 0) {
+                    margin = new int[]{buffer.getInt(), buffer.getInt(),
+                            buffer.getInt(), buffer.getInt()};
+                }
+                return new PageOp(pageSize, margin);
+            case OP_NEW_PAGE:
+                return new NewPageOp();
+            case OP_HRULE:
+                return new HruleOp(readAttributes(buffer, strings));
+            case OP_IMAGE:
+                return new ImageOp(readAttributes(buffer, strings));
+            case OP_BARCODE:
+                String formatName = string(buffer, strings);
+                if (formatName == null) {
+                    throw new IOException("Compiled template corrupted.");
+                }
+                BarcodeFormat format = BarcodeFormat.valueOf(formatName);
+                return new BarcodeOp(format, readAttributes(buffer, strings));
+            case OP_BLOCK:
+                String blockName = string(buffer, strings);
+                return new BlockOp(blockName, readChunks(buffer, strings));
+            case OP_TABLE:
+                TextTable table = new TextTable();
+                table.addAttrs(readMap(buffer, strings));
+                for (TextChunk chunk : readChunks(buffer, strings)) {
+                    table.addCell(chunk);
+                }
+                return new TableOp(table);
+            case OP_TABLE_BEGIN:
+                TextTable header = new TextTable();
+                header.addAttrs(readMap(buffer, strings));
+                return new TableBeginOp(header);
+            case OP_TABLE_CELLS:
+                return new TableCellsOp(readChunks(buffer, strings));
+            case OP_TABLE_END:
+                return new TableEndOp();
+            case OP_REPEAT:
+                ValuePath over = ValuePath.compile(string(buffer, strings));
+                String alias = string(buffer, strings);
+                return new RepeatOp(over, alias, readOps(buffer, strings));
+            case OP_IF:
+                Condition test = Condition.compile(string(buffer, strings));
+                List<TemplateOp> then = readOps(buffer, strings);
+                return new IfOp(test, then, readOps(buffer, strings));
+            default:
+                throw new IOException("Template operation type " + type + " unknown.");
+        }
+    }
+
+    /**
+     * 读取数量，数量不可能超过剩余的字节数，文件损坏时不能分配过大或者负数长度的数组
+     */
+    private static int count(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            throw new IOException("Compiled template corrupted.");
+        }
+        return count;
+    }
+
+    private static String string(ByteBuffer buffer, String[] strings) {
+        int index = buffer.getInt();
+        return index < 0 ? null : strings[index];
+    }
+
+    private static Attributes readAttributes(ByteBuffer buffer, String[] strings) throws IOException {
+        AttributesImpl attrs = new AttributesImpl();
+        int count = count(buffer);
+        for (int i = 0; i < count; i++) {
+            String name = string(buffer, strings);
+            attrs.addAttribute("", name, name, "CDATA", string(buffer, strings));
+        }
+        return attrs;
+    }
+
+    private static Map<String, String> readMap(ByteBuffer buffer, String[] strings) throws IOException {
+        int count = count(buffer);
+        Map<String, String> attrs = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            String name = string(buffer, strings);
+            attrs.put(name, string(buffer, strings));
+        }
+        return attrs;
+    }
+
+    private static List<TextChunk> readChunks(ByteBuffer buffer, String[] strings) throws IOException {
+        int count = count(buffer);
+        List<TextChunk> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            TextChunk chunk = new TextChunk();
+            chunk.setIsValue((buffer.get() & CHUNK_VALUE) != 0);
+            chunk.setContents(string(buffer, strings));
+            chunk.setValueFontStyle(string(buffer, strings));
+            chunk.addAttrs(readMap(buffer, strings));
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,574 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.google.zxing.BarcodeFormat;
+import com.itextpdf.kernel.geom.PageSize;
+import com.janeluo.easypdf.image.InlineImage;
+import lombok.extern.slf4j.Slf4j;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.BaseStream;
+
+/**
+ * 编译后的模板操作，生成文档时按顺序应用到输出文档
+ * <p>
+ * 操作在编译后不再修改，可以被多个线程同时使用。
+ */
+interface TemplateOp {
+    void apply(RenderContext context) throws IOException;
+
+    /**
+     * 收集操作引用的数据路径
+     */
+    default void collectPaths(Collection<ValuePath> paths) {
+    }
+}
+
+/**
+ * 生成一个文档时的上下文
+ */
+@Slf4j
+class RenderContext {
+    final TextDoc doc;
+    final DataSource data;
+    /**
+     * 是否在生成时填充数据，HTML 文档通过表单填写，不需要填充
+     */
+    final boolean resolveValues;
+
+    RenderContext(TextDoc doc, DataSource data) {
+        this(doc, data, doc instanceof PDFDoc);
+    }
+
+    private RenderContext(TextDoc doc, DataSource data, boolean resolveValues) {
+        this.doc = doc;
+        this.data = data;
+        this.resolveValues = resolveValues;
+    }
+
+    /**
+     * repeat 中每个元素的上下文，先从元素中取值，再从外层数据源中取值
+     */
+    RenderContext scope(Object item, String alias) {
+        return new RenderContext(doc, new ScopedDataSource(item, alias, data), resolveValues);
+    }
+
+    /**
+     * 没有数据源的上下文，HTML 文档中 repeat 的内容不对应某个元素
+     */
+    RenderContext withoutData() {
+        return data == null ? this : new RenderContext(doc, null, resolveValues);
+    }
+
+    /**
+     * 取得路径对应的数据，没有数据源或者没有该数据时返回 null
+     */
+    Object lookup(ValuePath path) {
+        if (data == null) {
+            return null;
+        }
+        Object value = data.get(path);
+        if (value == null) {
+            error("Data key '" + path + "' not found!");
+        }
+        return value;
+    }
+
+    void error(String message) {
+        if (log.isErrorEnabled()) {
+            log.error(message);
+        } else {
+            System.err.println(message);
+        }
+    }
+}
+
+/**
+ * page 元素，设置页面并开始新的一页
+ */
+class PageOp implements TemplateOp {
+    final PageSize pageSize;
+    final int[] margin;
+
+    PageOp(PageSize pageSize, int[] margin) {
+        this.pageSize = pageSize;
+        this.margin = margin;
+    }
+
+    @Override
+    public void apply(RenderContext context) {
+        if (pageSize != null) {
+            context.doc.setPageSize(pageSize);
+        }
+        if (margin != null) {
+            context.doc.setPageMargin(margin[0], margin[1], margin[2], margin[3]);
+        }
+        context.doc.newPage();
+    }
+}
+
+/**
+ * pagebreak 元素
+ */
+class NewPageOp implements TemplateOp {
+    @Override
+    public void apply(RenderContext context) {
+        context.doc.newPage();
+    }
+}
+
+/**
+ * hrule 元素
+ */
+class HruleOp implements TemplateOp {
+    final Attributes attrs;
+
+    HruleOp(Attributes attrs) {
+        this.attrs = new AttributesImpl(attrs);
+    }
+
+    @Override
+    public void apply(RenderContext context) {
+        context.doc.addHrule(attrs);
+    }
+}
+
+/**
+ * img 元素，没有 src 属性时引用数据源中的内联图片
+ */
+class ImageOp implements TemplateOp {
+    final Attributes attrs;
+    final ValuePath path;
+
+    ImageOp(Attributes attrs) {
+        this.attrs = new AttributesImpl(attrs);
+        String id = attrs.getValue("id");
+        this.path = id == null ? null : ValuePath.compile(id);
+    }
+
+    @Override
+    public void apply(RenderContext context) {
+        if (attrs.getValue("src") != null || path == null || !context.resolveValues) {
+            context.doc.addImage(attrs);
+            return;
+        }
+        Object value = context.lookup(path);
+        if (value == null) {
+            return;
+        }
+        try {
+            context.doc.addImage(attrs, InlineImage.decode(value));
+        } catch (IOException e) {
+            context.error("Data key '" + path + "' is not a valid image.");
+        }
+    }
+
+    @Override
+    public void collectPaths(Collection<ValuePath> paths) {
+        if (path != null && attrs.getValue("src") == null) {
+            paths.add(path);
+        }
+    }
+}
+
+/**
+ * qrcode、barcode 元素，内容来自 value 属性或者数据源中 id 对应的值
+ */
+class BarcodeOp implements TemplateOp {
+    final BarcodeFormat format;
+    final Attributes attrs;
+    final ValuePath path;
+
+    BarcodeOp(BarcodeFormat format, Attributes attrs) {
+        this.format = format;
+        this.attrs = new AttributesImpl(attrs);
+        String id = attrs.getValue("id");
+        this.path = id == null ? null : ValuePath.compile(id);
+    }
+
+    @Override
+    public void apply(RenderContext context) {
+        String contents = attrs.getValue("value");
+        if (contents == null && context.resolveValues) {
+            Object value = context.lookup(path);
+            if (value == null) {
+                if (context.data != null) {
+                    return;
+                }
+            } else {
+                String text = ValuePath.text(value);
+                contents = text != null ? text : value.toString();
+            }
+        }
+        context.doc.addBarcode(format, attrs, contents);
+    }
+
+    @Override
+    public void collectPaths(Collection<ValuePath> paths) {
+        if (path != null && attrs.getValue("value") == null) {
+            paths.add(path);
+        }
+    }
+}
+
+/**
+ * 块元素，值节点在生成时填充
+ */
+class BlockOp implements TemplateOp {
+    final String blockName;
+    final List<TextChunk> chunks;
+    /**
+     * 值节点的数据路径，与 chunks 一一对应，不是值节点时为 null
+     */
+    private final ValuePath[] paths;
+    /**
+     * 值节点的格式化，没有时为 null
+     */
+    private final ValueFormat[] formats;
+
+    BlockOp(String blockName, List<TextChunk> chunks) {
+        this.blockName = blockName;
+        this.chunks = new ArrayList<>(chunks);
+        this.paths = paths(this.chunks);
+        this.formats = formats(this.chunks, paths);
+    }
+
+    @Override
+    public void apply(RenderContext context) throws IOException {
+        context.doc.writeBlock(blockName, resolve(context, chunks, paths, formats));
+    }
+
+    @Override
+    public void collectPaths(Collection<ValuePath> paths) {
+        collectPaths(this.paths, paths);
+    }
+
+    /**
+     * 编译值节点的数据路径
+     */
+    static ValuePath[] paths(List<TextChunk> chunks) {
+        ValuePath[] paths = new ValuePath[chunks.size()];
+        for (int i = 0; i < paths.length; i++) {
+            TextChunk chunk = chunks.get(i);
+            String id = chunk.getAttributes().get("id");
+            if (chunk.isValue() && id != null) {
+                paths[i] = ValuePath.compile(id);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * 编译值节点的 format、date、currency 属性
+     */
+    static ValueFormat[] formats(List<TextChunk> chunks, ValuePath[] paths) {
+        ValueFormat[] formats = new ValueFormat[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            if (paths[i] != null) {
+                formats[i] = ValueFormat.compile(chunks.get(i).getAttributes());
+            }
+        }
+        return formats;
+    }
+
+    static void collectPaths(ValuePath[] paths, Collection<ValuePath> result) {
+        for (ValuePath path : paths) {
+            if (path != null) {
+                result.add(path);
+            }
+        }
+    }
+
+    /**
+     * 填充值节点，HTML 文档不填充
+     */
+    static List<TextChunk> resolve(RenderContext context, List<TextChunk> chunks,
+                                   ValuePath[] paths, ValueFormat[] formats) {
+        if (!context.resolveValues) {
+            return chunks;
+        }
+        List<TextChunk> list = new ArrayList<>(chunks.size());
+        for (int i = 0; i < paths.length; i++) {
+            TextChunk chunk = chunks.get(i);
+            list.add(paths[i] != null ? resolve(context, chunk, paths[i], formats[i]) : chunk);
+        }
+        return list;
+    }
+
+    private static TextChunk resolve(RenderContext context, TextChunk chunk,
+                                     ValuePath path, ValueFormat format) {
+        Object value = context.lookup(path);
+        if (value == null) {
+            return chunk;
+        }
+        String text = format == null ? null : format.format(value);
+        if (text == null) {
+            text = ValuePath.text(value);
+        }
+        if (text == null) {
+            context.error("Data key '" + path + "' must has a string, number or boolean value.");
+            return chunk;
+        }
+        return chunk.withValue(text);
+    }
+}
+
+/**
+ * table 元素
+ */
+class TableOp implements TemplateOp {
+    final TextTable table;
+
+    TableOp(TextTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public void apply(RenderContext context) throws IOException {
+        context.doc.writeTable(table);
+    }
+}
+
+/**
+ * 逐行输出的表格开始，包含 repeat 或者值单元格的表格使用
+ */
+class TableBeginOp implements TemplateOp {
+    /**
+     * 只有表格属性，没有单元格
+     */
+    final TextTable table;
+
+    TableBeginOp(TextTable table) {
+        this.table = table;
+    }
+
+    @Override
+    public void apply(RenderContext context) throws IOException {
+        context.doc.beginTable(table);
+    }
+}
+
+/**
+ * 逐行输出的表格中的一组单元格，值单元格在生成时填充
+ */
+class TableCellsOp implements TemplateOp {
+    final List<TextChunk> cells;
+    private final ValuePath[] paths;
+    private final ValueFormat[] formats;
+
+    TableCellsOp(List<TextChunk> cells) {
+        this.cells = new ArrayList<>(cells);
+        this.paths = BlockOp.paths(this.cells);
+        this.formats = BlockOp.formats(this.cells, paths);
+    }
+
+    @Override
+    public void apply(RenderContext context) throws IOException {
+        context.doc.addTableCells(BlockOp.resolve(context, cells, paths, formats));
+    }
+
+    @Override
+    public void collectPaths(Collection<ValuePath> paths) {
+        BlockOp.collectPaths(this.paths, paths);
+    }
+}
+
+/**
+ * 逐行输出的表格结束
+ */
+class TableEndOp implements TemplateOp {
+    @Override
+    public void apply(RenderContext context) throws IOException {
+        context.doc.endTable();
+    }
+}
+
+/**
+ * repeat 元素，对数组中的每个元素应用一次内容
+ * <p>
+ * 数组逐个元素读取，数据源可以返回 Iterable、Iterator、Stream 或者数组，
+ * Iterator 和 Stream 只能使用一次。HTML 文档或者没有数据时内容只输出一次，
+ * 这时内容中的 if 不按数据选择分支。
+ */
+class RepeatOp implements TemplateOp {
+    final ValuePath over;
+    /**
+     * 元素的别名，可以为 null
+     */
+    final String alias;
+    final List<TemplateOp> body;
+
+    RepeatOp(ValuePath over, String alias, List<TemplateOp> body) {
+        this.over = over;
+        this.alias = alias;
+        this.body = Collections.unmodifiableList(new ArrayList<>(body));
+    }
+
+    @Override
+    public void apply(RenderContext context) throws IOException {
+        if (!context.resolveValues || context.data == null) {
+            applyBody(context.withoutData());
+            return;
+        }
+        Object value = context.lookup(over);
+        if (value == null) {
+            return;
+        }
+        Iterator<?> iterator = iterator(value);
+        if (iterator == null) {
+            context.error("Data key '" + over + "' must be an array.");
+            return;
+        }
+        try {
+            while (iterator.hasNext()) {
+                applyBody(context.scope(iterator.next(), alias));
+            }
+        } finally {
+            if (value instanceof BaseStream) {
+                ((BaseStream<?, ?>) value).close();
+            }
+        }
+    }
+
+    private void applyBody(RenderContext context) throws IOException {
+        for (TemplateOp op : body) {
+            op.apply(context);
+        }
+    }
+
+    private static Iterator<?> iterator(Object value) {
+        if (value instanceof Iterable) {
+            return ((Iterable<?>) value).iterator();
+        }
+        if (value instanceof Iterator) {
+            return (Iterator<?>) value;
+        }
+        if (value instanceof BaseStream) {
+            return ((BaseStream<?, ?>) value).iterator();
+        }
+        if (value.getClass().isArray()) {
+            return new Iterator<Object>() {
+                private final int length = Array.getLength(value);
+                private int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < length;
+                }
+
+                @Override
+                public Object next() {
+                    if (index >= length) {
+                        throw new NoSuchElementException();
+                    }
+                    return Array.get(value, index++);
+                }
+            };
+        }
+        return null;
+    }
+
+    /**
+     * 内容引用的路径可能来自元素也可能来自外层数据，两者都收集，
+     * 元素的路径表示为 over[*].path
+     */
+    @Override
+    public void collectPaths(Collection<ValuePath> paths) {
+        Set<ValuePath> inner = new LinkedHashSet<>();
+        for (TemplateOp op : body) {
+            op.collectPaths(inner);
+        }
+        if (inner.isEmpty()) {
+            paths.add(over);
+            return;
+        }
+        String prefix = over.getPath() + "[*]";
+        for (ValuePath path : inner) {
+            String id = path.getPath();
+            if (alias != null && id.startsWith(alias)
+                    && (id.length() == alias.length() || id.charAt(alias.length()) == '.'
+                    || id.charAt(alias.length()) == '[')) {
+                paths.add(ValuePath.compile(prefix + id.substring(alias.length())));
+            } else {
+                paths.add(ValuePath.compile(prefix + "." + id));
+                paths.add(path);
+            }
+        }
+    }
+}
+
+/**
+ * if 元素，条件不成立时对应的内容不会生成，也不会加载其中的图片和字体
+ * <p>
+ * HTML 文档同样按数据选择分支，没有数据时输出两个分支，编辑表单中包含两个分支的值；
+ * PDF 文档没有数据时输出 if 的内容。
+ */
+class IfOp implements TemplateOp {
+    final Condition test;
+    final List<TemplateOp> then;
+    /**
+     * else 的内容，没有 else 时为空
+     */
+    final List<TemplateOp> otherwise;
+
+    IfOp(Condition test, List<TemplateOp> then, List<TemplateOp> otherwise) {
+        this.test = test;
+        this.then = Collections.unmodifiableList(new ArrayList<>(then));
+        this.otherwise = Collections.unmodifiableList(new ArrayList<>(otherwise));
+    }
+
+    /**
+     * @return 按数据选择的分支
+     */
+    List<TemplateOp> branch(DataSource data) {
+        if (data == null) {
+            return then;
+        }
+        return test.test(data) ? then : otherwise;
+    }
+
+    @Override
+    public void apply(RenderContext context) throws IOException {
+        if (!context.resolveValues && context.data == null) {
+            for (TemplateOp op : then) {
+                op.apply(context);
+            }
+            for (TemplateOp op : otherwise) {
+                op.apply(context);
+            }
+            return;
+        }
+        for (TemplateOp op : branch(context.data)) {
+            op.apply(context);
+        }
+    }
+
+    @Override
+    public void collectPaths(Collection<ValuePath> paths) {
+        test.collectPaths(paths);
+        for (TemplateOp op : then) {
+            op.collectPaths(paths);
+        }
+        for (TemplateOp op : otherwise) {
+            op.collectPaths(paths);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+/**
+ * 收集 SAX 文本回调的字符，并规范化空白
+ * <p>
+ * 规则与模板一直使用的规则相同：去掉每段文本开头和结尾的空白，
+ * 去掉包含换行的空白串，其它空白原样保留。
+ * 直接处理 SAX 的 char[] 窗口，状态跨回调保存，每个 chunk 只生成一个 String。
+ *
+ * @author janeluo
+ */
+final class TextAccumulator {
+    private char[] buffer = new char[256];
+    private int length = 0;
+    /**
+     * 当前是否在一段文本的开头，开头的空白直接丢弃
+     */
+    private boolean textStart = true;
+    /**
+     * 尚未确定是否保留的空白串的起始位置，-1 表示没有
+     */
+    private int blankStart = -1;
+    private boolean blankNewline = false;
+
+    /**
+     * 追加一次 characters() 回调的内容
+     */
+    void append(char[] ch, int start, int count) {
+        ensureCapacity(length + count);
+        char[] buf = buffer;
+        int len = length;
+        for (int i = start, end = start + count; i < end; i++) {
+            char c = ch[i];
+            if (c <= ' ') {
+                if (textStart) {
+                    continue;
+                }
+                if (blankStart < 0) {
+                    blankStart = len;
+                }
+                if (c == '\n') {
+                    blankNewline = true;
+                }
+                buf[len++] = c;
+            } else {
+                if (blankStart >= 0) {
+                    if (blankNewline) {
+                        len = blankStart;
+                    }
+                    blankStart = -1;
+                    blankNewline = false;
+                }
+                textStart = false;
+                buf[len++] = c;
+            }
+        }
+        length = len;
+    }
+
+    /**
+     * 一段文本结束(遇到元素开始或结束)，丢弃结尾的空白
+     */
+    void endText() {
+        if (blankStart >= 0) {
+            length = blankStart;
+            blankStart = -1;
+            blankNewline = false;
+        }
+        textStart = true;
+    }
+
+    /**
+     * 原样追加字符，用于 break、hspace 等元素
+     */
+    void appendRaw(char c) {
+        endText();
+        ensureCapacity(length + 1);
+        buffer[length++] = c;
+    }
+
+    int length() {
+        return length;
+    }
+
+    void clear() {
+        length = 0;
+        blankStart = -1;
+        blankNewline = false;
+        textStart = true;
+    }
+
+    /**
+     * @return 收集到的内容，并清空
+     */
+    String take() {
+        endText();
+        String contents = new String(buffer, 0, length);
+        clear();
+        return contents;
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, blankStart >= 0 ? blankStart : length);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            char[] newBuffer = new char[Math.max(capacity, buffer.length * 2)];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+    }
+}
@@ -10,17 +10,33 @@ package com.janeluo.easypdf;
 
 import org.xml.sax.Attributes;
 
+import java.util.AbstractMap;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
 public class TextChunk {
     private String contents;
-    private final Map<String, String> attrs;
+    private ChunkAttributes attrs;
     private boolean isValue;
+    /**
+     * 值节点取到值时使用的字体风格，null 表示不改变
+     */
+    private String valueFontStyle;
+    /**
+     * 加上 valueFontStyle 之后的属性表，多次生成之间共享
+     */
+    private volatile ChunkAttributes valueAttrs;
 
     public TextChunk() {
-        attrs = new HashMap<>();
+        attrs = ChunkAttributes.EMPTY;
+    }
+
+    /**
+     * 继承父节点的属性，不复制父节点的属性表
+     */
+    public TextChunk(TextChunk parent) {
+        attrs = parent.attrs;
     }
 
     public String getContents() {
@@ -31,29 +47,43 @@ public class TextChunk {
         this.contents = chars;
     }
 
+    /**
+     * 兼容早期版本的属性表，put/putAll 等同于 addAttr/addAttrs，不支持删除。
+     * 只读取属性时使用 {@link #getAttributes()}，不需要创建视图
+     *
+     * @return 可修改的属性视图
+     */
     public Map<String, String> getAttrs() {
+        return new AttrsView();
+    }
+
+    /**
+     * @return 只读的属性表，与父节点以及 clone 共享，修改请使用 addAttr/addAttrs
+     */
+    public Map<String, String> getAttributes() {
         return attrs;
     }
 
+    /**
+     * @return 解析好的样式
+     */
+    ChunkStyle getStyle() {
+        return attrs.style();
+    }
+
     public void addAttrs(Attributes attrs) {
-        for (int i = 0; i < attrs.getLength(); i++) {
-            String name = attrs.getQName(i);
-            String value = attrs.getValue(i);
-            this.attrs.put(name, value);
-        }
+        this.attrs = this.attrs.with(attrs);
+        valueAttrs = null;
     }
 
     public void addAttrs(Map<String, String> attrs) {
-        Set<String> keys = attrs.keySet();
-        for (String key : keys) {
-            this.attrs.put(key, attrs.get(key));
-        }
+        this.attrs = this.attrs.with(attrs);
+        valueAttrs = null;
     }
 
     public void addAttr(String key, String value) {
-        if (key != null && value != null) {
-            attrs.put(key, value);
-        }
+        attrs = attrs.with(key, value);
+        valueAttrs = null;
     }
 
     public boolean isValue() {
@@ -64,16 +94,71 @@ public class TextChunk {
         this.isValue = isValue;
     }
 
-    @Override
-    public TextChunk clone() {
-        TextChunk chunk = new TextChunk();
+    public String getValueFontStyle() {
+        return valueFontStyle;
+    }
+
+    public void setValueFontStyle(String valueFontStyle) {
+        this.valueFontStyle = valueFontStyle;
+        valueAttrs = null;
+    }
+
+    /**
+     * 值节点取到值之后的 chunk，值放在原有内容之前
+     */
+    TextChunk withValue(String value) {
+        TextChunk chunk = clone();
+        chunk.contents = contents == null ? value : value + contents;
+        if (valueFontStyle != null) {
+            ChunkAttributes resolved = valueAttrs;
+            if (resolved == null) {
+                resolved = attrs.with("font-style", valueFontStyle);
+                valueAttrs = resolved;
+            }
+            chunk.attrs = resolved;
+        }
+        return chunk;
+    }
+
+    /**
+     * 写入时替换 chunk 的属性表，读取时总是取当前的属性表
+     */
+    private class AttrsView extends AbstractMap<String, String> {
+        @Override
+        public String get(Object key) {
+            return attrs.get(key);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return attrs.containsKey(key);
+        }
 
-        Set<String> keys = this.attrs.keySet();
-        for (String key : keys) {
-            chunk.attrs.put(key, this.attrs.get(key));
+        @Override
+        public String put(String key, String value) {
+            String prev = attrs.get(key);
+            addAttr(key, value);
+            return prev;
         }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends String> map) {
+            addAttrs(new HashMap<>(map));
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return attrs.entrySet();
+        }
+    }
+
+    @Override
+    public TextChunk clone() {
+        // 属性表不可变，直接共享
+        TextChunk chunk = new TextChunk(this);
         chunk.contents = this.contents;
         chunk.isValue = this.isValue;
+        chunk.valueFontStyle = this.valueFontStyle;
         return chunk;
     }
 
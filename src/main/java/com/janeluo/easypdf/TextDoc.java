@@ -8,8 +8,10 @@
  */
 package com.janeluo.easypdf;
 
+import com.google.zxing.BarcodeFormat;
 import com.itextpdf.kernel.geom.PageSize;
 import com.itextpdf.kernel.geom.Rectangle;
+import com.janeluo.easypdf.image.InlineImage;
 import org.xml.sax.Attributes;
 
 import java.io.IOException;
@@ -113,6 +115,28 @@ public abstract class TextDoc {
      */
     abstract public void addImage(Attributes attrs);
 
+    /**
+     * 添加数据源中的内联图片，只有填充数据的文档(PDF)会调用，默认输出占位图片
+     *
+     * @param attrs 属性
+     * @param image 图片数据
+     */
+    public void addImage(Attributes attrs, InlineImage image) {
+        addImage(attrs);
+    }
+
+    /**
+     * 添加二维码或者条码
+     *
+     * @param format   条码格式
+     * @param attrs    属性
+     * @param contents 条码内容，内容来自数据源但是没有数据时为 null
+     */
+    public void addBarcode(BarcodeFormat format, Attributes attrs, String contents) {
+        // 默认不支持条码，保持已有子类可用
+        System.err.println("barcode unsupported by " + getClass().getName() + ".");
+    }
+
     /**
      * 添加表格
      *
@@ -120,4 +144,84 @@ public abstract class TextDoc {
      * @throws IOException IO异常
      */
     abstract public void writeTable(TextTable table) throws IOException;
+
+    /**
+     * 逐行输出的表格，默认收集全部单元格后调用 {@link #writeTable(TextTable)}
+     */
+    private TextTable pendingTable;
+
+    /**
+     * 开始逐行输出表格，之后调用 {@link #addTableCells(List)} 添加单元格，
+     * 最后调用 {@link #endTable()}
+     *
+     * @param table 表格属性，单元格忽略
+     * @throws IOException IO异常
+     */
+    public void beginTable(TextTable table) throws IOException {
+        pendingTable = new TextTable();
+        pendingTable.addAttrs(table.getAttrs());
+    }
+
+    /**
+     * 添加一组单元格，按列数自动换行
+     *
+     * @param cells 单元格
+     * @throws IOException IO异常
+     */
+    public void addTableCells(List<TextChunk> cells) throws IOException {
+        if (pendingTable != null) {
+            for (TextChunk cell : cells) {
+                pendingTable.addCell(cell);
+            }
+        }
+    }
+
+    /**
+     * 结束逐行输出的表格
+     *
+     * @throws IOException IO异常
+     */
+    public void endTable() throws IOException {
+        TextTable table = pendingTable;
+        pendingTable = null;
+        if (table != null && table.getCells().size() > 0) {
+            writeTable(table);
+        }
+    }
+
+    /**
+     * 解析尺寸属性(单位为 pt)
+     *
+     * @param value 属性值
+     * @return 尺寸，没有设置或者无效时返回 0
+     */
+    static float parseSize(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Float.parseFloat(value.trim());
+        } catch (NumberFormatException ex) {
+            System.err.println("size '" + value + "' invalid.");
+            return 0;
+        }
+    }
+
+    /**
+     * 解析条码的 margin 属性
+     *
+     * @param value 属性值
+     * @return 空白模块数，没有设置或者无效时返回 -1，即使用条码格式的默认值
+     */
+    static int parseMargin(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException ex) {
+            System.err.println("margin '" + value + "' invalid.");
+            return -1;
+        }
+    }
 }
@@ -8,6 +8,10 @@
  */
 package com.janeluo.easypdf;
 
+import com.janeluo.easypdf.font.FontProgramCache;
+import com.janeluo.easypdf.font.FontRegistry;
+import org.apache.commons.io.output.NullOutputStream;
+
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -19,6 +23,90 @@ import java.util.List;
  * 这个类提供命令行程序，以及高级 API
  */
 public class TextPDF {
+    /**
+     * 编译后模板文件的扩展名
+     */
+    public static final String COMPILED_EXTENSION = "ctpl";
+
+    /**
+     * 预热用的合成模板，覆盖所有常用的元素
+     */
+    private static final String WARM_UP_XML = ""
+            + "<textpdf>"
+            + "<page size=\"a4\" margin=\"50,50,50,56\"/>"
+            + "<title>预热 Warm up</title>"
+            + "<chapter>第一章</chapter>"
+            + "<section font-family=\"heiti\">第一节</section>"
+            + "<para align=\"left\" indent=\"22\" space-before=\"6\">甲方："
+            + "<value id=\"name\" minlen=\"20\"/><hspace size=\"4\"/>"
+            + "<span font-style=\"bold,italic\" font-size=\"14\">粗斜体</span>"
+            + "<span super=\"true\">1</span><span sub=\"true\">2</span>"
+            + "<break/>第二行</para>"
+            + "<para></para>"
+            + "<table columns=\"1,2\" width=\"90\">"
+            + "<cell align=\"center\">名称</cell><cell>内容</cell>"
+            + "</table>"
+            + "<pagebreak/>"
+            + "<para align=\"right\">结束</para>"
+            + "</textpdf>";
+
+    private static final String WARM_UP_JSON =
+            "{\"title\": \"warm up\", \"data\": {\"name\": \"预热\"}}";
+
+    /**
+     * 预热生成引擎
+     * <p>
+     * JVM 启动后第一次生成文档需要加载 iText、SAX、fastjson 等类，解析字体，
+     * 并且热点代码还没有经过 JIT 编译，耗时可能达到数秒。应用程序可以在启动时
+     * (例如就绪检查通过之前)调用这个函数：预先加载字体，初始化 SAX 解析器，
+     * 并用一个合成的模板生成若干次文档，输出丢弃。
+     *
+     * @param options 预热选项
+     * @return 预热耗时，单位为毫秒
+     * @throws Exception 字体加载或者文档生成失败
+     */
+    static public long warmUp(WarmUpOptions options) throws Exception {
+        if (options == null) {
+            throw new IllegalArgumentException();
+        }
+        long start = System.currentTimeMillis();
+
+        if (options.getFontFamilies() != null) {
+            for (String family : options.getFontFamilies()) {
+                String fontProgram = FontRegistry.getFontProgram(family);
+                if (fontProgram == null) {
+                    throw new IOException("Font family '" + family + "' unknown!");
+                }
+                FontProgramCache.preload(fontProgram);
+            }
+        }
+        TextParser.newSAXParser();
+
+        byte[] xmlBytes = WARM_UP_XML.getBytes(StandardCharsets.UTF_8);
+        byte[] jsonBytes = WARM_UP_JSON.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < options.getIterations(); i++) {
+            new TextParser(new ByteArrayInputStream(xmlBytes),
+                    new ByteArrayInputStream(jsonBytes),
+                    NullOutputStream.NULL_OUTPUT_STREAM).genPdf();
+            if (options.isHtml()) {
+                new TextParser(new ByteArrayInputStream(xmlBytes),
+                        new ByteArrayInputStream(jsonBytes),
+                        NullOutputStream.NULL_OUTPUT_STREAM).genHtml();
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * 使用默认选项预热生成引擎
+     *
+     * @return 预热耗时，单位为毫秒
+     * @throws Exception 字体加载或者文档生成失败
+     */
+    static public long warmUp() throws Exception {
+        return warmUp(new WarmUpOptions());
+    }
+
     /**
      * 生成 PDF 文件
      *
@@ -78,6 +166,7 @@ public class TextPDF {
         String css_paths = null;
         String js_paths = null;
         boolean print_help = false;
+        boolean compile = false;
 
         for (int i = 0; i < args.length; i++) {
             if (args[i].equals("-o")) {
@@ -120,6 +209,8 @@ public class TextPDF {
                 }
                 js_paths = args[i + 1];
                 i++;
+            } else if (args[i].equals("-compile")) {
+                compile = true;
             } else if (args[i].equals("-h")) {
                 print_help = true;
             } else if (args[i].equals("-v")) {
@@ -137,13 +228,14 @@ public class TextPDF {
                 System.err.println();
             }
             System.err.println("Usage:");
-            System.err.println("  java -jar textpdf.jar [OPTION] <xmlfile|docfile> [jsonfile]");
+            System.err.println("  java -jar textpdf.jar [OPTION] <xmlfile|docfile|ctplfile> [jsonfile]");
             System.err.println("\nOptions:");
             System.err.println("  -o filename    : Output file name");
             System.err.println("  -f [pdf|html]  : Output file format");
             System.err.println("  -e encoding    : Output file encoding");
             System.err.println("  -css path1,... : Add CSS link to output file");
             System.err.println("  -js path1,...  : Add JS link to output file");
+            System.err.println("  -compile       : Compile xmlfile to ctplfile");
             System.err.println("  -v             : Print version");
             System.err.println("  -h             : Print this information");
             System.err.println();
@@ -163,7 +255,7 @@ public class TextPDF {
             }
         }
         if (out_fname == null) {
-            out_fname = args2.get(0) + "." + out_format;
+            out_fname = args2.get(0) + "." + (compile ? COMPILED_EXTENSION : out_format);
         }
         File outfile = new File(out_fname);
         if (outfile.exists()) {
@@ -185,14 +277,30 @@ public class TextPDF {
                 reader.read(doc_stream, xml_stream, null);
                 xmlfile = tmpfile;
             }
+            if (compile) {
+                try (InputStream xml_stream = new FileInputStream(xmlfile);
+                     OutputStream out_stream = new FileOutputStream(outfile)) {
+                    TextParser.compile(xml_stream).writeTo(out_stream);
+                }
+                if (args2.get(0).endsWith(".doc")) {
+                    xmlfile.delete();
+                }
+                return;
+            }
             InputStream json_stream = null;
             if (jsonfile != null) {
                 json_stream = new FileInputStream(jsonfile);
             }
-            TextParser parser = new TextParser(
-                    new FileInputStream(xmlfile),
-                    json_stream,
-                    new FileOutputStream(outfile));
+            TextParser parser;
+            if (args2.get(0).endsWith("." + COMPILED_EXTENSION)) {
+                parser = new TextParser(null, json_stream, new FileOutputStream(outfile));
+                parser.setCompiledTemplate(CompiledTemplate.load(xmlfile.toPath()));
+            } else {
+                parser = new TextParser(
+                        new FileInputStream(xmlfile),
+                        json_stream,
+                        new FileOutputStream(outfile));
+            }
             if (out_encoding != null) {
                 parser.setOutputEncoding(out_encoding);
             }
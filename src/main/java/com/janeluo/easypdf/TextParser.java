@@ -8,12 +8,21 @@
  */
 package com.janeluo.easypdf;
 
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
 import com.janeluo.easypdf.enums.DocType;
+import com.janeluo.easypdf.image.ImageOptions;
+import com.janeluo.easypdf.image.ImagePrefetcher;
+import com.janeluo.easypdf.template.TemplateStore;
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.*;
 
 /**
@@ -25,12 +34,33 @@ import java.util.*;
  * 版本 0.2 增加生成 HTML 的能力，主要的原因是 XSL 用起来太恼火
  */
 @Data
+@Slf4j
 public class TextParser {
+    /**
+     * SAXParserFactory 的创建需要查找服务实现，代价较高，因此全局只创建一次
+     */
+    private static final SAXParserFactory SAX_PARSER_FACTORY = createParserFactory();
 
     /**
-     * 模板输入流
+     * 模板输入流，没有设置 templateKey 时每次生成都要读取整个流并计算校验和
      */
     protected InputStream templateStream;
+    /**
+     * templateStream 的缓存键，设置后模板按照这个键缓存，命中时不读取 templateStream
+     */
+    protected String templateKey;
+    /**
+     * 模板文件路径，设置后忽略 templateStream，模板只解析一次并缓存
+     */
+    protected String templateFile;
+    /**
+     * 内存映射的模板文件，适用于较大的模板，设置后忽略 templateFile 以及 templateStream
+     */
+    protected Path templatePath;
+    /**
+     * 大于 0 时以模板的该页作为生成文档每一页的背景，0 表示在模板上追加内容
+     */
+    protected int templateBackgroundPage = 0;
     /**
      * xml输入流
      */
@@ -49,6 +79,28 @@ public class TextParser {
     protected String htmlDeclare = null;
     protected String htmlExtra = null;
     protected int typeInput = HTMLDoc.TYPE_INPUT;
+    /**
+     * 生成 PDF 时的图片处理选项，默认不处理
+     */
+    protected ImageOptions imageOptions = null;
+    /**
+     * 生成 PDF 时是否在排版之前并行预取模板中的图片
+     */
+    protected boolean imagePrefetch = false;
+    /**
+     * 编译后的模板，设置后忽略 xmlStream
+     */
+    protected CompiledTemplate compiledTemplate = null;
+    /**
+     * 生成 PDF 时只从 JSON 流中提取模板引用的数据，不构建完整的 JSON 对象，
+     * 适用于数据很大而模板只引用其中一小部分的情况
+     */
+    protected boolean streamingJson = false;
+    /**
+     * 生成文档时使用的数据源，设置后不再从 JSON 数据流中取得数据，
+     * 生成 HTML 时只用于选择 if 的分支
+     */
+    protected DataSource dataSource = null;
 
     public TextParser(InputStream xmlStream, InputStream inputStream,
                       OutputStream outputStream) {
@@ -59,6 +111,17 @@ public class TextParser {
         jsPaths = new ArrayList<>();
     }
 
+    /**
+     * 设置按键缓存的模板输入流
+     *
+     * @param key    模板的缓存键，模板内容变化时需要使用新的键
+     * @param stream 模板输入流，只在缓存未命中时读取
+     */
+    public void setTemplateStream(String key, InputStream stream) {
+        this.templateKey = key;
+        this.templateStream = stream;
+    }
+
     /**
      * 在输出的 html 文件中添加 css 链接
      *
@@ -101,13 +164,177 @@ public class TextParser {
 
 
     /**
-     * 解析 XML 模板并生成输出文档
+     * 直接使用内存中的数据生成 PDF，不需要序列化为 JSON。
+     * 生成 HTML 时数据只用于选择 if 的分支，不填充到输入框
+     *
+     * @param data 数据，对应 JSON 中的 data 对象
      */
-    public void gen(DocType docType) throws Exception {
+    public void setData(Map<String, ?> data) {
+        this.dataSource = data == null ? null : new MapDataSource(data);
+    }
+
+    /**
+     * 直接使用内存中的对象生成 PDF，value 的 id 为对象的属性路径。
+     * 生成 HTML 时数据只用于选择 if 的分支，不填充到输入框
+     *
+     * @param data POJO、Map 或者 DataSource
+     */
+    public void setData(Object data) {
+        this.dataSource = BeanDataSource.of(data);
+    }
+
+    private static SAXParserFactory createParserFactory() {
         SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware(false);
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(xmlStream, new TextParserDocHandler(this, docType));
+        return factory;
+    }
+
+    /**
+     * 创建 SAX 解析器，SAXParserFactory 不保证线程安全，因此需要同步
+     *
+     * @return SAX 解析器
+     */
+    static SAXParser newSAXParser() throws Exception {
+        synchronized (SAX_PARSER_FACTORY) {
+            return SAX_PARSER_FACTORY.newSAXParser();
+        }
+    }
+
+    /**
+     * 编译 XML 模板，编译后的模板可以通过 {@link #setCompiledTemplate} 重复使用
+     *
+     * @param xmlStream XML 模板输入流
+     * @return 编译后的模板
+     * @throws IOException 模板读取失败或者格式错误
+     */
+    public static CompiledTemplate compile(InputStream xmlStream) throws IOException {
+        return CompiledTemplate.compile(xmlStream);
+    }
+
+    /**
+     * 解析 XML 模板并生成输出文档，设置了编译后的模板时不再解析 XML
+     */
+    public void gen(DocType docType) throws Exception {
+        CompiledTemplate template = compiledTemplate;
+        if (template == null) {
+            template = CompiledTemplate.compile(xmlStream);
+        }
+        render(template, docType);
+    }
+
+    /**
+     * 按本对象的设置生成编译好的模板
+     */
+    void render(CompiledTemplate template, DocType docType) throws IOException {
+        TextDoc textDoc;
+        DataSource data = null;
+
+        switch (docType) {
+            case DPF:
+                PDFDoc pdfDoc = new PDFDoc(templateStream, outStream);
+                if (templatePath != null) {
+                    pdfDoc.setTemplate(TemplateStore.get(templatePath));
+                } else if (templateFile != null) {
+                    pdfDoc.setTemplate(TemplateStore.get(templateFile));
+                } else if (templateKey != null && templateStream != null) {
+                    pdfDoc.setTemplate(TemplateStore.get(templateKey, templateStream));
+                }
+                pdfDoc.setTemplateBackgroundPage(templateBackgroundPage);
+                pdfDoc.setImageOptions(imageOptions);
+                if (dataSource != null) {
+                    data = dataSource;
+                } else {
+                    JSONObject json = streamingJson ? extractJson(template) : readJson();
+                    if (json != null) {
+                        data = jsonData(json);
+                    }
+                }
+                if (imagePrefetch) {
+                    // 编译后的模板已经知道所有的图片，在排版之前提交预取
+                    ImagePrefetcher prefetcher = new ImagePrefetcher();
+                    template.prefetchImages(prefetcher,
+                            imageOptions != null ? imageOptions : new ImageOptions(), data);
+                    pdfDoc.setImagePrefetcher(prefetcher);
+                }
+                textDoc = pdfDoc;
+                break;
+
+            case HTML:
+                HTMLDoc htmlDoc = new HTMLDoc(outStream);
+                htmlDoc.setLinkPaths(cssPaths, jsPaths);
+                if (htmlDeclare != null) {
+                    htmlDoc.setDeclare(htmlDeclare);
+                }
+                if (htmlExtra != null) {
+                    htmlDoc.setExtra(htmlExtra);
+                }
+                JSONObject json = readJson();
+                if (json != null) {
+                    htmlDoc.setJSONObject(json);
+                }
+                // HTML 不填充数据，但 if 仍然按数据选择分支
+                if (dataSource != null) {
+                    data = dataSource;
+                } else if (json != null) {
+                    data = jsonData(json);
+                }
+                textDoc = htmlDoc;
+                break;
+            default:
+                log.error("Document type unsupported.");
+                throw new IOException("Document type unsupported.");
+        }
+
+        if (outputEncoding != null) {
+            textDoc.setEncoding(outputEncoding);
+        }
+        template.render(textDoc, data);
+    }
+
+    private JSONObject readJson() throws IOException {
+        if (jsonStream == null) {
+            return null;
+        }
+        try {
+            return JSONObject.parseObject(IOUtils.toString(jsonStream, StandardCharsets.UTF_8));
+        } catch (JSONException ex) {
+            throw new IOException("Failed to parse JSON stream", ex);
+        }
+    }
+
+    /**
+     * 从 JSON 流中只提取模板引用的数据
+     */
+    private JSONObject extractJson(CompiledTemplate template) throws IOException {
+        if (jsonStream == null) {
+            return null;
+        }
+        return JsonExtractor.extract(
+                new InputStreamReader(jsonStream, StandardCharsets.UTF_8), template.getPaths());
+    }
+
+    /**
+     * 取得 JSON 中的 data 对象作为数据源
+     */
+    private static DataSource jsonData(JSONObject json) {
+        if (!json.containsKey("data")) {
+            if (log.isErrorEnabled()) {
+                log.error("JSON source missing 'data' key, please check!");
+            } else {
+                System.err.println("JSON source missing 'data' key, please check!");
+            }
+            return null;
+        }
+        Object value = json.get("data");
+        if (!(value instanceof JSONObject)) {
+            if (log.isErrorEnabled()) {
+                log.error("JSON 'data' must be a object.");
+            } else {
+                System.err.println("JSON 'data' must be a object.");
+            }
+            return null;
+        }
+        return new JsonDataSource((JSONObject) value);
     }
 
     /**
@@ -124,5 +351,3 @@ public class TextParser {
         gen(DocType.HTML);
     }
 }
-
-
@@ -9,24 +9,27 @@
 package com.janeluo.easypdf;
 
 
-import com.alibaba.fastjson.JSONObject;
+import com.google.zxing.BarcodeFormat;
 import com.itextpdf.kernel.geom.PageSize;
+import com.janeluo.easypdf.draw.BarcodeCache;
 import com.janeluo.easypdf.enums.DocType;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.EmptyStackException;
 import java.util.List;
 import java.util.Stack;
+import java.util.function.Function;
 
 /**
- * 解析 XML 模板，并生成 PDF 文件
+ * 解析 XML 模板，并编译为 {@link CompiledTemplate}
  *
  * @author janeluo
  */
@@ -55,106 +58,102 @@ public class TextParserDocHandler extends DefaultHandler {
             {"b10", PageSize.B10},
     };
 
-    private final TextParser parser;
-    private final TextDoc textDoc;
+    /**
+     * 当前接收操作的列表，repeat、if、else 中为它们的内容
+     */
+    private List<TemplateOp> ops;
+    private final Deque<Frame> frames;
     private final List<TextChunk> chunkList;
     private final Stack<TextChunk> chunkStack;
-    private final StringBuilder contentsBuilder;
-    private JSONObject jsonData;
+    private final TextAccumulator text;
     private TextTable table = null;
+    /**
+     * 当前接收单元格的列表，表格中的 repeat 里为一行的单元格
+     */
+    private List<TextChunk> tableCells;
+    /**
+     * 逐行输出的表格内容，没有 repeat 时为空
+     */
+    private List<TemplateOp> tableParts;
+    private Frame tableRepeat;
+    private boolean tableValues;
+    private boolean opened = false;
+    private CompiledTemplate template;
+    /**
+     * 兼容旧的用法，解析完成后按 parser 的设置生成文档，否则为 null
+     */
+    private TextParser parser;
+    private DocType docType;
 
+    /**
+     * 解析完成后按 parser 的设置生成文档，与 {@link TextParser#gen(DocType)} 相同
+     *
+     * @param parser  生成参数
+     * @param docType 文档类型
+     * @deprecated 使用 {@link CompiledTemplate#compile} 编译模板后调用 {@link CompiledTemplate#render}，
+     * 或者直接使用 {@link TextParser#gen(DocType)}
+     */
+    @Deprecated
     public TextParserDocHandler(TextParser parser, DocType docType) throws IOException {
-        chunkList = new ArrayList<>();
-        chunkStack = new Stack<>();
-        contentsBuilder = new StringBuilder();
-
+        this();
+        if (docType == null) {
+            throw new IOException("Document type unsupported.");
+        }
         this.parser = parser;
+        this.docType = docType;
+    }
 
-        switch (docType) {
-            case DPF:
-                textDoc = new PDFDoc(parser.templateStream, parser.outStream);
-                break;
-
-            case HTML:
-                textDoc = new HTMLDoc(parser.outStream);
-                HTMLDoc textDoc = (HTMLDoc) this.textDoc;
-                textDoc.setLinkPaths(parser.cssPaths, parser.jsPaths);
-                if (parser.htmlDeclare != null) {
-                    textDoc.setDeclare(parser.htmlDeclare);
-                }
-                if (parser.htmlExtra != null) {
-                    textDoc.setExtra(parser.htmlExtra);
-                }
-                break;
-            default:
-                log.error("Document type unsupported.");
-                throw new IOException("Document type unsupported.");
-        }
+    public TextParserDocHandler() {
+        ops = new ArrayList<>();
+        frames = new ArrayDeque<>();
+        chunkList = new ArrayList<>();
+        chunkStack = new Stack<>();
+        text = new TextAccumulator();
+    }
 
-        if (parser.outputEncoding != null) {
-            textDoc.setEncoding(parser.outputEncoding);
-        }
+    /**
+     * @return 编译后的模板，解析完成之前为 null
+     */
+    public CompiledTemplate getTemplate() {
+        return template;
     }
 
     /**
      * 文档开始解析时回调
      */
     @Override
-    public void startDocument() throws SAXException {
+    public void startDocument() {
         if (log.isDebugEnabled()) {
             log.debug("解析文件开始");
         }
-        try {
-            if (parser.jsonStream != null) {
-                final String jsonStr = IOUtils.toString(parser.jsonStream, StandardCharsets.UTF_8);
-
-                JSONObject jsonObject = JSONObject.parseObject(jsonStr);
-
-                if (textDoc instanceof PDFDoc) {
-                    if (!jsonObject.containsKey("data")) {
-                        if (log.isErrorEnabled()) {
-                            log.error("JSON source missing 'data' key, please check!");
-                        } else {
-                            System.err.println(
-                                    "JSON source missing 'data' key, please check!");
-                        }
-                    } else {
-                        Object value = jsonObject.get("data");
-                        if (!(value instanceof JSONObject)) {
-                            if (log.isErrorEnabled()) {
-                                log.error("JSON 'data' must be a object.");
-                            } else {
-                                System.err.println("JSON 'data' must be a object.");
-                            }
-                        } else {
-                            jsonData = (JSONObject) value;
-                        }
-                    }
-                } else if (textDoc instanceof HTMLDoc) {
-                    ((HTMLDoc) textDoc).setJSONObject(jsonObject);
-                }
-            }
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            throw new SAXException("Failed to parse JSON stream");
-        }
     }
 
     /**
      * 文档解析结束时回调
      */
     @Override
-    public void endDocument() {
+    public void endDocument() throws SAXException {
+        template = new CompiledTemplate(ops);
+        if (parser != null) {
+            try {
+                parser.render(template, docType);
+            } catch (IOException ex) {
+                throw new SAXException(ex);
+            }
+        }
     }
 
 
-    private void setupPage(Attributes attrs) {
+    private PageOp setupPage(Attributes attrs) {
+        PageSize pageSize = null;
+        int[] margin = null;
+
         // 页面大小
         String value = attrs.getValue("size");
         if (value != null) {
             for (Object[] item : pageSizeMap) {
                 if (value.equalsIgnoreCase((String) item[0])) {
-                    textDoc.setPageSize((PageSize) item[1]);
+                    pageSize = (PageSize) item[1];
                     break;
                 }
             }
@@ -173,11 +172,11 @@ public class TextParserDocHandler extends DefaultHandler {
                 }
             } else {
                 try {
-                    textDoc.setPageMargin(
+                    margin = new int[]{
                             Integer.parseInt(array[0].trim()),
                             Integer.parseInt(array[1].trim()),
                             Integer.parseInt(array[2].trim()),
-                            Integer.parseInt(array[3].trim()));
+                            Integer.parseInt(array[3].trim())};
                 } catch (Exception ex) {
                     if (log.isErrorEnabled()) {
                         log.error("Page margin format error.");
@@ -187,6 +186,101 @@ public class TextParserDocHandler extends DefaultHandler {
                 }
             }
         }
+        return new PageOp(pageSize, margin);
+    }
+
+    private Frame startRepeat(Attributes attrs) throws SAXException {
+        String over = attrs.getValue("over");
+        if (over == null) {
+            throw new SAXException("repeat element missing 'over' attribute.");
+        }
+        ValuePath path = ValuePath.compile(over);
+        String alias = attrs.getValue("as");
+        return new Frame(ops, body -> new RepeatOp(path, alias, body));
+    }
+
+    private Frame startIf(Attributes attrs) throws SAXException {
+        String test = attrs.getValue("test");
+        if (test == null) {
+            throw new SAXException("if element missing 'test' attribute.");
+        }
+        try {
+            Condition condition = Condition.compile(test);
+            return new Frame(ops, body -> new IfOp(condition, body, Collections.emptyList()));
+        } catch (IllegalArgumentException ex) {
+            throw new SAXException(ex.getMessage());
+        }
+    }
+
+    /**
+     * else 紧跟在 if 之后，把前面的 if 换成带 else 的 if
+     */
+    private Frame startElse() throws SAXException {
+        TemplateOp last = ops.isEmpty() ? null : ops.get(ops.size() - 1);
+        if (!(last instanceof IfOp) || !((IfOp) last).otherwise.isEmpty()) {
+            throw new SAXException("else must follow an if element");
+        }
+        IfOp op = (IfOp) last;
+        ops.remove(ops.size() - 1);
+        return new Frame(ops, body -> new IfOp(op.test, op.then, body));
+    }
+
+    /**
+     * 把已经读到的单元格作为一组加入逐行输出的表格内容
+     */
+    private void flushTableCells() {
+        if (!tableCells.isEmpty()) {
+            tableParts.add(new TableCellsOp(tableCells));
+        }
+        tableCells = new ArrayList<>();
+    }
+
+    /**
+     * 表格中没有 repeat 和值单元格时一次输出，否则逐行输出
+     */
+    private void endTable() {
+        if (tableParts.isEmpty() && !tableValues) {
+            if (table.getCells().size() > 0) {
+                ops.add(new TableOp(table));
+            }
+            return;
+        }
+        flushTableCells();
+        TextTable header = new TextTable();
+        header.addAttrs(table.getAttrs());
+        ops.add(new TableBeginOp(header));
+        ops.addAll(tableParts);
+        ops.add(new TableEndOp());
+    }
+
+    /**
+     * 添加二维码或者条码，内容来自 value 属性或者生成时数据源中 id 对应的值
+     */
+    private void addBarcode(String qName, Attributes attrs) {
+        BarcodeFormat format = BarcodeFormat.QR_CODE;
+        if ("barcode".equalsIgnoreCase(qName)) {
+            String value = attrs.getValue("format");
+            format = BarcodeCache.parseFormat(value == null ? "code128" : value);
+            if (format == null) {
+                if (log.isErrorEnabled()) {
+                    log.error("Barcode format '" + value + "' unsupported.");
+                } else {
+                    System.err.println("Barcode format '" + value + "' unsupported.");
+                }
+                return;
+            }
+        }
+        String contents = attrs.getValue("value");
+        String id = attrs.getValue("id");
+        if (contents == null && id == null) {
+            if (log.isErrorEnabled()) {
+                log.error(qName + " element missing 'value' or 'id' attribute.");
+            } else {
+                System.err.println(qName + " element missing 'value' or 'id' attribute.");
+            }
+            return;
+        }
+        ops.add(new BarcodeOp(format, attrs));
     }
 
     /**
@@ -196,20 +290,21 @@ public class TextParserDocHandler extends DefaultHandler {
     public void startElement(String namespaceUri,
                              String localName, String qName, Attributes attrs)
             throws SAXException {
-        log.info(">>>>>> start qName:[{}]", qName);
+        if (log.isDebugEnabled()) {
+            log.debug("start element: {}", qName);
+        }
+        text.endText();
         TextChunk prevChunk = null;
 
         if ("textpdf".equalsIgnoreCase(qName)) {
-            if (textDoc.isOpen()) {
+            if (opened) {
                 throw new SAXException("'textpdf' must be root element.");
             }
-            if (!textDoc.open()) {
-                throw new SAXException("Open document failed.");
-            }
+            opened = true;
             return;
         }
 
-        if (!textDoc.isOpen()) {
+        if (!opened) {
             throw new SAXException("Document unopen yet. "
                     + "check your xml root element is 'textpdf'");
         }
@@ -225,48 +320,80 @@ public class TextParserDocHandler extends DefaultHandler {
         if ("table".equalsIgnoreCase(qName)) {
             table = new TextTable();
             table.addAttrs(attrs);
+            tableCells = table.getCells();
+            tableParts = new ArrayList<>();
+            tableRepeat = null;
+            tableValues = false;
             return;
         }
         if (table != null) {
+            if ("repeat".equalsIgnoreCase(qName)) {
+                if (tableRepeat != null) {
+                    throw new SAXException("repeat can not be nested in table");
+                }
+                tableRepeat = startRepeat(attrs);
+                flushTableCells();
+                return;
+            }
             if (!"cell".equalsIgnoreCase(qName)) {
                 throw new SAXException(qName + " is not child of table");
             }
             TextChunk chunk = new TextChunk();
             chunk.addAttrs(attrs);
-            table.addCell(chunk);
-            contentsBuilder.setLength(0);
+            if (attrs.getValue("id") != null) {
+                chunk.setIsValue(true);
+                tableValues = true;
+            }
+            tableCells.add(chunk);
+            text.clear();
+            return;
+        }
+
+        if ("repeat".equalsIgnoreCase(qName) || "if".equalsIgnoreCase(qName)
+                || "else".equalsIgnoreCase(qName)) {
+            if (!chunkStack.isEmpty()) {
+                throw new SAXException(qName + " can not be inside a block");
+            }
+            Frame frame;
+            if ("repeat".equalsIgnoreCase(qName)) {
+                frame = startRepeat(attrs);
+            } else if ("if".equalsIgnoreCase(qName)) {
+                frame = startIf(attrs);
+            } else {
+                frame = startElse();
+            }
+            frames.push(frame);
+            ops = new ArrayList<>();
             return;
         }
 
         if ("page".equalsIgnoreCase(qName)) {
-            setupPage(attrs);
-            textDoc.newPage();
+            ops.add(setupPage(attrs));
             return;
         }
         if ("hrule".equalsIgnoreCase(qName)) {
-            textDoc.addHrule(attrs);
+            ops.add(new HruleOp(attrs));
             return;
         }
         if ("img".equalsIgnoreCase(qName)) {
-            textDoc.addImage(attrs);
+            ops.add(new ImageOp(attrs));
+            return;
+        }
+        if ("qrcode".equalsIgnoreCase(qName) || "barcode".equalsIgnoreCase(qName)) {
+            addBarcode(qName, attrs);
             return;
         }
 
         try {
             prevChunk = chunkStack.peek();
-            String contents = contentsBuilder.toString();
-            if (contents.length() > 0) {
-                prevChunk.setContents(contents);
-                contentsBuilder.setLength(0);
+            if (text.length() > 0) {
+                prevChunk.setContents(text.take());
                 chunkList.add(prevChunk.clone());
             }
         } catch (EmptyStackException ignored) {
         }
 
-        TextChunk chunk = new TextChunk();
-        if (prevChunk != null) {
-            chunk.addAttrs(prevChunk.getAttrs());
-        }
+        TextChunk chunk = prevChunk == null ? new TextChunk() : new TextChunk(prevChunk);
         chunk.addAttrs(attrs);
 
         if ("value".equalsIgnoreCase(qName)) {
@@ -280,37 +407,9 @@ public class TextParserDocHandler extends DefaultHandler {
                 } else {
                     System.err.println("Value element missing 'id' attribute.");
                 }
-            } else {
-                if (textDoc instanceof PDFDoc) {
-                    if (jsonData != null) {
-                        if (!jsonData.containsKey(id)) {
-                            if (log.isErrorEnabled()) {
-                                log.error("JSON data key '" + id
-                                        + "' not found!");
-                            } else {
-                                System.err.println("JSON data key '" + id
-                                        + "' not found!");
-                            }
-
-                        } else {
-                            Object value = jsonData.get(id);
-                            if (!(value instanceof String)) {
-                                if (log.isErrorEnabled()) {
-                                    log.error("JSON  data key '" + id
-                                            + "' must has a string value.");
-                                } else {
-                                    System.err.println("JSON  data key '" + id
-                                            + "' must has a string value.");
-                                }
-                            } else {
-                                contentsBuilder.append(value);
-                                if (attrs.getValue("font-style") == null) {
-                                    chunk.addAttr("font-style", "bold,underline");
-                                }
-                            }
-                        }
-                    }
-                }
+            } else if (attrs.getValue("font-style") == null) {
+                // 值节点取到值时默认加粗并加下划线
+                chunk.setValueFontStyle("bold,underline");
             }
         } else if ("hspace".equalsIgnoreCase(qName)) {
             String value = attrs.getValue("size");
@@ -324,7 +423,7 @@ public class TextParserDocHandler extends DefaultHandler {
                 try {
                     int size = Integer.parseInt(value);
                     for (int i = 0; i < size; i++) {
-                        contentsBuilder.append(' ');
+                        text.appendRaw(' ');
                     }
                 } catch (Exception ex) {
                     if (log.isErrorEnabled()) {
@@ -343,9 +442,7 @@ public class TextParserDocHandler extends DefaultHandler {
      */
     @Override
     public void characters(char[] ch, int start, int length) {
-        String contents = new String(ch, start, length);
-        contentsBuilder.append(
-                contents.replaceAll("\\s*\n+\\s*", "").trim());
+        text.append(ch, start, length);
     }
 
     /**
@@ -354,34 +451,48 @@ public class TextParserDocHandler extends DefaultHandler {
     @Override
     public void endElement(String namespaceUri,
                            String localName, String qName) throws SAXException {
-        log.info(">>>>>> end qName:[{}]", qName);
+        if (log.isDebugEnabled()) {
+            log.debug("end element: {}", qName);
+        }
+        text.endText();
         if ("textpdf".equalsIgnoreCase(qName)) {
-            textDoc.close();
             return;
         }
         if ("pagebreak".equalsIgnoreCase(qName)) {
-            textDoc.newPage();
+            ops.add(new NewPageOp());
             return;
         }
         if ("break".equalsIgnoreCase(qName)) {
-            contentsBuilder.append("\n");
+            text.appendRaw('\n');
             return;
         }
 
+        if (table != null && "repeat".equalsIgnoreCase(qName)) {
+            List<TemplateOp> body = Collections.singletonList(new TableCellsOp(tableCells));
+            tableParts.add(tableRepeat.build.apply(body));
+            tableCells = new ArrayList<>();
+            tableRepeat = null;
+            text.clear();
+            return;
+        }
+        if ("repeat".equalsIgnoreCase(qName) || "if".equalsIgnoreCase(qName)
+                || "else".equalsIgnoreCase(qName)) {
+            Frame frame = frames.pop();
+            TemplateOp op = frame.build.apply(ops);
+            ops = frame.parentOps;
+            ops.add(op);
+            return;
+        }
         if ("cell".equalsIgnoreCase(qName)) {
-            TextChunk chunk = table.lastCell();
-            chunk.setContents(contentsBuilder.toString());
+            TextChunk chunk = tableCells.get(tableCells.size() - 1);
+            chunk.setContents(text.take());
         }
         if ("table".equalsIgnoreCase(qName)) {
-            if (table.getCells().size() > 0) {
-                try {
-                    textDoc.writeTable(table);
-                } catch (IOException e) {
-                    throw new SAXException(e);
-                }
-            }
-            contentsBuilder.setLength(0);
+            endTable();
+            text.clear();
             table = null;
+            tableCells = null;
+            tableParts = null;
             return;
         }
 
@@ -394,12 +505,10 @@ public class TextParserDocHandler extends DefaultHandler {
         if (chunk == null) {
             return;
         }
-        String contents = contentsBuilder.toString();
-        if (contents.length() > 0 ||
+        if (text.length() > 0 ||
                 "value".equalsIgnoreCase(qName) ||
                 "hspace".equalsIgnoreCase(qName)) {
-            chunk.setContents(contents);
-            contentsBuilder.setLength(0);
+            chunk.setContents(text.take());
             chunkList.add(chunk.clone());
         }
 
@@ -412,18 +521,27 @@ public class TextParserDocHandler extends DefaultHandler {
 
             if (chunkList.size() > 0) {
                 if (label.equalsIgnoreCase(qName)) {
-                    try {
-                        textDoc.writeBlock(qName, chunkList);
-                    } catch (Exception e) {
-                        e.printStackTrace();
-                        throw new SAXException("Write to PDF failed.");
-                    } finally {
-                        chunkList.clear();
-                    }
+                    ops.add(new BlockOp(qName, chunkList));
+                    chunkList.clear();
                     break;
                 }
             }
         }
     }
 
+    /**
+     * 正在解析的 repeat、if 或者 else 元素
+     */
+    private static final class Frame {
+        final List<TemplateOp> parentOps;
+        /**
+         * 用元素的内容生成操作
+         */
+        final Function<List<TemplateOp>, TemplateOp> build;
+
+        Frame(List<TemplateOp> parentOps, Function<List<TemplateOp>, TemplateOp> build) {
+            this.parentOps = parentOps;
+            this.build = build;
+        }
+    }
 }
@@ -0,0 +1,142 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.itextpdf.layout.property.TextAlignment;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link TemplateBuilder} 使用的文字风格，对应 XML 模板中的风格属性
+ * <p>
+ * 风格不可修改，每个方法返回新的风格，可以在多个块之间共享。例如：
+ * <pre>
+ * TextStyle style = TextStyle.create().fontSize(14).bold().align(TextAlignment.CENTER);
+ * </pre>
+ *
+ * @author janeluo
+ */
+public final class TextStyle {
+    private static final TextStyle EMPTY = new TextStyle(Collections.emptyMap());
+
+    private final Map<String, String> attrs;
+
+    private TextStyle(Map<String, String> attrs) {
+        this.attrs = attrs;
+    }
+
+    public static TextStyle create() {
+        return EMPTY;
+    }
+
+    private TextStyle with(String key, String value) {
+        Map<String, String> map = new LinkedHashMap<>(attrs);
+        map.put(key, value);
+        return new TextStyle(Collections.unmodifiableMap(map));
+    }
+
+    /**
+     * @param family 字体名称，必须已经在 FontRegistry 中注册
+     */
+    public TextStyle fontFamily(String family) {
+        return with("font-family", family);
+    }
+
+    public TextStyle fontSize(int size) {
+        return with("font-size", String.valueOf(size));
+    }
+
+    public TextStyle bold() {
+        return fontStyle("bold");
+    }
+
+    public TextStyle italic() {
+        return fontStyle("italic");
+    }
+
+    public TextStyle underline() {
+        return fontStyle("underline");
+    }
+
+    /**
+     * 不使用块默认的粗体、斜体等风格
+     */
+    public TextStyle plain() {
+        return with("font-style", "");
+    }
+
+    private TextStyle fontStyle(String style) {
+        String current = attrs.get("font-style");
+        if (current == null || current.isEmpty()) {
+            return with("font-style", style);
+        }
+        for (String item : current.split(",")) {
+            if (item.trim().equals(style)) {
+                return this;
+            }
+        }
+        return with("font-style", current + "," + style);
+    }
+
+    /**
+     * @param alignment 只支持 LEFT、CENTER、RIGHT
+     */
+    public TextStyle align(TextAlignment alignment) {
+        switch (alignment) {
+            case LEFT:
+                return with("align", "left");
+            case CENTER:
+                return with("align", "center");
+            case RIGHT:
+                return with("align", "right");
+            default:
+                throw new IllegalArgumentException("Alignment " + alignment + " unsupported.");
+        }
+    }
+
+    /**
+     * 首行缩进，单位为 pt
+     */
+    public TextStyle indent(float indent) {
+        return with("indent", number(indent));
+    }
+
+    public TextStyle spaceBefore(float space) {
+        return with("space-before", number(space));
+    }
+
+    public TextStyle spaceAfter(float space) {
+        return with("space-after", number(space));
+    }
+
+    public TextStyle superscript() {
+        return with("super", "true");
+    }
+
+    public TextStyle subscript() {
+        return with("sub", "true");
+    }
+
+    /**
+     * 最小长度，内容不足时用空格补齐，非 ASCII 字符按两个长度计算
+     */
+    public TextStyle minLength(int length) {
+        return with("minlen", String.valueOf(length));
+    }
+
+    Map<String, String> attrs() {
+        return attrs;
+    }
+
+    private static String number(float value) {
+        return value == (int) value ? String.valueOf((int) value) : String.valueOf(value);
+    }
+}
@@ -0,0 +1,207 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 值节点的格式化，来自 format、date、currency 属性
+ * <p>
+ * 在编译模板时创建，相同的属性在进程内共享，重新编译模板不会重新创建。
+ * 生成文档时可以在多个线程中同时使用：DateTimeFormatter 本身线程安全，
+ * DecimalFormat 每个线程复制一份原型。
+ *
+ * @author janeluo
+ */
+@Slf4j
+final class ValueFormat {
+    /**
+     * 格式化使用的区域，与文档的语言一致
+     */
+    private static final Locale LOCALE = Locale.CHINA;
+    private static final int MAX_CACHED = 1024;
+    /**
+     * 键为 format、currency、date 三个属性
+     */
+    private static final Map<List<String>, ValueFormat> CACHE = new ConcurrentHashMap<>();
+
+    private final DecimalFormat number;
+    private final ThreadLocal<DecimalFormat> numbers;
+    private final DateTimeFormatter date;
+
+    private ValueFormat(DecimalFormat number, DateTimeFormatter date) {
+        this.number = number;
+        this.numbers = number == null ? null : ThreadLocal.withInitial(() -> (DecimalFormat) number.clone());
+        this.date = date;
+    }
+
+    /**
+     * 编译格式化属性，格式错误的属性忽略
+     *
+     * @param attrs 属性
+     * @return 格式化，没有格式化属性时为 null
+     */
+    static ValueFormat compile(Map<String, String> attrs) {
+        String pattern = attrs.get("format");
+        String currency = attrs.get("currency");
+        String datePattern = attrs.get("date");
+        if (pattern == null && currency == null && datePattern == null) {
+            return null;
+        }
+        List<String> key = Arrays.asList(pattern, currency, datePattern);
+        ValueFormat format = CACHE.get(key);
+        if (format != null) {
+            return format;
+        }
+        format = create(pattern, currency, datePattern);
+        if (format == null || CACHE.size() >= MAX_CACHED) {
+            return format;
+        }
+        ValueFormat cached = CACHE.putIfAbsent(key, format);
+        return cached == null ? format : cached;
+    }
+
+    private static ValueFormat create(String pattern, String currency, String datePattern) {
+        DecimalFormat number = null;
+        if (pattern != null || currency != null) {
+            try {
+                number = new DecimalFormat(pattern != null ? pattern : "¤#,##0.00",
+                        DecimalFormatSymbols.getInstance(LOCALE));
+                number.setRoundingMode(RoundingMode.HALF_UP);
+                if (currency != null) {
+                    Currency unit = Currency.getInstance(currency.trim());
+                    number.setCurrency(unit);
+                    if (pattern == null && unit.getDefaultFractionDigits() >= 0) {
+                        number.setMinimumFractionDigits(unit.getDefaultFractionDigits());
+                        number.setMaximumFractionDigits(unit.getDefaultFractionDigits());
+                    }
+                }
+            } catch (IllegalArgumentException ex) {
+                error("Number format '" + (pattern != null ? pattern : currency) + "' invalid.");
+                number = null;
+            }
+        }
+        DateTimeFormatter date = null;
+        if (datePattern != null) {
+            try {
+                date = DateTimeFormatter.ofPattern(datePattern, LOCALE);
+            } catch (IllegalArgumentException ex) {
+                error("Date format '" + datePattern + "' invalid.");
+            }
+        }
+        return number == null && date == null ? null : new ValueFormat(number, date);
+    }
+
+    private static void error(String message) {
+        if (log.isErrorEnabled()) {
+            log.error(message);
+        } else {
+            System.err.println(message);
+        }
+    }
+
+    /**
+     * 格式化取到的值
+     *
+     * @param value 值
+     * @return 格式化的文字，不能格式化时为 null
+     */
+    String format(Object value) {
+        if (date != null) {
+            TemporalAccessor temporal = temporal(value);
+            if (temporal != null) {
+                try {
+                    return date.format(temporal);
+                } catch (RuntimeException ex) {
+                    // 例如只有日期却要求时间
+                    return null;
+                }
+            }
+        }
+        if (number != null) {
+            BigDecimal decimal = decimal(value);
+            if (decimal != null) {
+                return numbers.get().format(decimal);
+            }
+        }
+        return null;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value instanceof BigDecimal) {
+            return (BigDecimal) value;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            return Double.isNaN(d) || Double.isInfinite(d) ? null : BigDecimal.valueOf(d);
+        }
+        if (value instanceof Number || value instanceof String) {
+            try {
+                return new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 日期可以是 Date、java.time 对象、long 毫秒数或者 ISO 格式的字符串
+     */
+    private static TemporalAccessor temporal(Object value) {
+        if (value instanceof Date) {
+            return ((Date) value).toInstant().atZone(ZoneId.systemDefault());
+        }
+        if (value instanceof Instant) {
+            return ((Instant) value).atZone(ZoneId.systemDefault());
+        }
+        if (value instanceof TemporalAccessor) {
+            return (TemporalAccessor) value;
+        }
+        if (value instanceof Long) {
+            // 只有 long 作为毫秒数，int 多半是 20240305 这样的数字
+            return Instant.ofEpochMilli(((Number) value).longValue()).atZone(ZoneId.systemDefault());
+        }
+        if (value instanceof String) {
+            String text = ((String) value).trim();
+            try {
+                if (text.length() <= 10) {
+                    return LocalDate.parse(text);
+                }
+                if (text.endsWith("Z") || text.lastIndexOf('+') > 10 || text.lastIndexOf('-') > 10) {
+                    return OffsetDateTime.parse(text);
+                }
+                return LocalDateTime.parse(text.replace(' ', 'T'));
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
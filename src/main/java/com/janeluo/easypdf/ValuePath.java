@@ -0,0 +1,203 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译好的数据路径，例如 {@code customer.address[0].city}
+ * <p>
+ * 路径在编译模板时解析一次，生成文档时逐段取值：第一段从数据源取得，
+ * 之后的属性从 Map 或 POJO 中取得，下标从 List 或数组中取得。
+ * 不含 '.' 和 '[' 的路径与早期版本的平铺 key 完全相同。
+ *
+ * @author janeluo
+ */
+public final class ValuePath {
+    /**
+     * [*] 表示数组的任意元素，只用于收集 repeat 引用的路径
+     */
+    static final Integer ANY_INDEX = -1;
+
+    private final String path;
+    /**
+     * 每一段为 String(属性名)或者 Integer(下标)
+     */
+    private final Object[] segments;
+
+    private ValuePath(String path, Object[] segments) {
+        this.path = path;
+        this.segments = segments;
+    }
+
+    /**
+     * 编译路径，格式错误的路径按一个完整的 key 处理
+     *
+     * @param path 路径
+     * @return 编译好的路径
+     */
+    public static ValuePath compile(String path) {
+        if (path == null) {
+            throw new IllegalArgumentException("path is null");
+        }
+        Object[] segments = parse(path);
+        return new ValuePath(path, segments == null ? new Object[]{path} : segments);
+    }
+
+    private static Object[] parse(String path) {
+        List<Object> segments = new ArrayList<>();
+        int length = path.length();
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            while (i < length && path.charAt(i) != '.' && path.charAt(i) != '[') {
+                i++;
+            }
+            if (i == start) {
+                return null;
+            }
+            segments.add(path.substring(start, i));
+            while (i < length && path.charAt(i) == '[') {
+                int end = path.indexOf(']', i);
+                if (end < 0) {
+                    return null;
+                }
+                String index = path.substring(i + 1, end).trim();
+                if ("*".equals(index)) {
+                    segments.add(ANY_INDEX);
+                    i = end + 1;
+                    continue;
+                }
+                try {
+                    segments.add(Integer.valueOf(index));
+                } catch (NumberFormatException ex) {
+                    return null;
+                }
+                i = end + 1;
+            }
+            if (i < length) {
+                if (path.charAt(i) != '.' || i == length - 1) {
+                    return null;
+                }
+                i++;
+            }
+        }
+        return segments.isEmpty() ? null : segments.toArray();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    int size() {
+        return segments.length;
+    }
+
+    /**
+     * @return 第 i 段，String 为属性名，Integer 为下标
+     */
+    Object segment(int i) {
+        return segments[i];
+    }
+
+    /**
+     * @return 是否为多段路径
+     */
+    public boolean isCompound() {
+        return segments.length > 1;
+    }
+
+    /**
+     * 从数据源中取值
+     *
+     * @param source 数据源
+     * @return 值，路径上任何一段没有数据时返回 null
+     */
+    public Object resolve(DataSource source) {
+        Object value = source.get((String) segments[0]);
+        for (int i = 1; i < segments.length && value != null; i++) {
+            value = step(value, segments[i]);
+        }
+        if (value == null && segments.length > 1) {
+            // 兼容平铺为 "a.b" 形式的数据
+            value = source.get(path);
+        }
+        return value;
+    }
+
+    /**
+     * 从一个对象上取得下一段的值
+     */
+    static Object step(Object target, Object segment) {
+        if (segment instanceof Integer) {
+            int index = (Integer) segment;
+            if (target instanceof List) {
+                List<?> list = (List<?>) target;
+                return index >= 0 && index < list.size() ? list.get(index) : null;
+            }
+            if (target.getClass().isArray()) {
+                return index >= 0 && index < Array.getLength(target) ? Array.get(target, index) : null;
+            }
+            return null;
+        }
+        if (target instanceof Map) {
+            return ((Map<?, ?>) target).get(segment);
+        }
+        if (BeanAccessor.isBean(target)) {
+            return BeanAccessor.of(target.getClass()).get(target, (String) segment);
+        }
+        return null;
+    }
+
+    /**
+     * 将取得的值转换为显示的文字
+     *
+     * @param value 值
+     * @return 文字，值不是字符串、数字、布尔值或者枚举时返回 null
+     */
+    public static String text(Object value) {
+        if (value instanceof String) {
+            return (String) value;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof Double || value instanceof Float) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return value.toString();
+            }
+            return new BigDecimal(value.toString()).stripTrailingZeros().toPlainString();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Enum) {
+            return value.toString();
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ValuePath && path.equals(((ValuePath) o).path);
+    }
+
+    @Override
+    public int hashCode() {
+        return path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
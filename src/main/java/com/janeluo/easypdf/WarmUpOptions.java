@@ -0,0 +1,36 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf;
+
+import com.janeluo.easypdf.font.FontRegistry;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 预热选项，参考 {@link TextPDF#warmUp(WarmUpOptions)}
+ */
+@Data
+public class WarmUpOptions {
+    /**
+     * 需要预先加载的字体名称，参考 {@link FontRegistry}，默认为黑体和宋体
+     */
+    private List<String> fontFamilies = new ArrayList<>(Arrays.asList(
+            FontRegistry.FAMILY_HEI, FontRegistry.FAMILY_SONG));
+    /**
+     * 用合成模板生成 PDF 的次数，次数越多 JIT 编译越充分
+     */
+    private int iterations = 3;
+    /**
+     * 是否同时预热 HTML 输出
+     */
+    private boolean html = false;
+}
@@ -0,0 +1,170 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.draw;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.MultiFormatWriter;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程级条码缓存
+ * <p>
+ * 缓存编码后的条码矩阵(每个模块一个点)，键为条码格式、内容、纠错级别以及空白边距。
+ * 缓存按照条目数限制大小，超过上限时淘汰最久没有使用的条码(LRU)。这个类是线程安全的。
+ */
+public class BarcodeCache {
+    /**
+     * 默认最多缓存的条码数量
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    private static final LinkedHashMap<String, BitMatrix> matrices =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private static int maxSize = DEFAULT_MAX_SIZE;
+
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * 取得条码矩阵，没有缓存则编码
+     *
+     * @param format   条码格式
+     * @param contents 条码内容
+     * @param ecc      QR 码纠错级别(L、M、Q、H)，可以为 null
+     * @param margin   空白边距(模块数)，小于 0 时使用条码格式的默认值
+     * @return 条码矩阵
+     * @throws IOException 内容不能编码为指定格式的条码
+     */
+    public static BitMatrix get(BarcodeFormat format, String contents,
+                                String ecc, int margin) throws IOException {
+        String key = key(format, contents, ecc, margin);
+        synchronized (matrices) {
+            BitMatrix matrix = matrices.get(key);
+            if (matrix != null) {
+                hitCount.incrementAndGet();
+                return matrix;
+            }
+        }
+        missCount.incrementAndGet();
+        BitMatrix matrix = encode(format, contents, ecc, margin);
+        synchronized (matrices) {
+            matrices.put(key, matrix);
+            trim();
+        }
+        return matrix;
+    }
+
+    /**
+     * 条码键，相同的键对应相同的条码矩阵
+     */
+    public static String key(BarcodeFormat format, String contents, String ecc, int margin) {
+        return format + "|" + ecc + "|" + margin + "|" + contents;
+    }
+
+    /**
+     * 解析条码格式，忽略大小写以及 '-'、'_'，例如 code128、CODE_128、qr-code
+     *
+     * @param name 格式名称
+     * @return 条码格式，不支持的格式返回 null
+     */
+    public static BarcodeFormat parseFormat(String name) {
+        String normalized = normalize(name);
+        for (BarcodeFormat format : BarcodeFormat.values()) {
+            if (normalize(format.name()).equals(normalized)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static String normalize(String name) {
+        return name.replace("_", "").replace("-", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static BitMatrix encode(BarcodeFormat format, String contents,
+                                    String ecc, int margin) throws IOException {
+        Map<EncodeHintType, Object> hints = new EnumMap<>(EncodeHintType.class);
+        hints.put(EncodeHintType.CHARACTER_SET, StandardCharsets.UTF_8.name());
+        if (margin >= 0) {
+            hints.put(EncodeHintType.MARGIN, margin);
+        }
+        if (ecc != null && format == BarcodeFormat.QR_CODE) {
+            try {
+                hints.put(EncodeHintType.ERROR_CORRECTION,
+                        ErrorCorrectionLevel.valueOf(ecc.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException ex) {
+                throw new IOException("Error correction level '" + ecc + "' invalid.");
+            }
+        }
+        try {
+            // 宽高为 0 时输出最小的矩阵，即每个模块一个点
+            return new MultiFormatWriter().encode(contents, format, 0, 0, hints);
+        } catch (WriterException | IllegalArgumentException ex) {
+            throw new IOException("Encode " + format + " '" + contents + "' failed.", ex);
+        }
+    }
+
+    private static void trim() {
+        while (matrices.size() > maxSize) {
+            matrices.remove(matrices.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * 设置最多缓存的条码数量，超出的条码立即淘汰
+     */
+    public static void setMaxSize(int size) {
+        synchronized (matrices) {
+            maxSize = Math.max(0, size);
+            trim();
+        }
+    }
+
+    public static int getMaxSize() {
+        synchronized (matrices) {
+            return maxSize;
+        }
+    }
+
+    public static int size() {
+        synchronized (matrices) {
+            return matrices.size();
+        }
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 清空缓存以及统计
+     */
+    public static void clear() {
+        synchronized (matrices) {
+            matrices.clear();
+        }
+        hitCount.set(0);
+        missCount.set(0);
+    }
+}
@@ -0,0 +1,163 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.draw;
+
+import com.google.zxing.common.BitMatrix;
+import com.itextpdf.kernel.colors.ColorConstants;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把条码矩阵绘制为矢量图形
+ * <p>
+ * 同一行中连续的深色模块合并为一个矩形，上下相邻、位置宽度都相同的矩形再合并为一个，
+ * 因此一维条码的每一根条只有一个矩形。矩阵的一个模块对应一个单位，使用时再缩放。
+ */
+public class BarcodeDrawer {
+    private BarcodeDrawer() {
+    }
+
+    /**
+     * 把条码矩阵绘制为 Form XObject，同一个文档中可以重复使用
+     *
+     * @param matrix   条码矩阵
+     * @param document 所属文档
+     * @return Form XObject，大小为矩阵的宽高
+     */
+    public static PdfFormXObject createFormXObject(BitMatrix matrix, PdfDocument document) {
+        int height = matrix.getHeight();
+        PdfFormXObject xObject = new PdfFormXObject(
+                new Rectangle(matrix.getWidth(), height));
+        PdfCanvas canvas = new PdfCanvas(xObject, document);
+        canvas.setFillColor(ColorConstants.BLACK);
+        for (int[] rect : rectangles(matrix)) {
+            // PDF 的坐标原点在左下角
+            canvas.rectangle(rect[0], height - rect[1] - rect[3], rect[2], rect[3]);
+        }
+        canvas.fill();
+        canvas.release();
+        return xObject;
+    }
+
+    /**
+     * 计算条码的显示尺寸
+     * <p>
+     * 一维条码默认每个模块 1pt 宽、36pt 高；二维条码默认 72pt 宽，
+     * 只设置了宽或者高时按照矩阵的比例计算另一个。
+     *
+     * @param matrix 条码矩阵
+     * @param width  设置的宽度，0 表示没有设置
+     * @param height 设置的高度，0 表示没有设置
+     * @return {宽, 高}
+     */
+    public static float[] displaySize(BitMatrix matrix, float width, float height) {
+        return displaySize(matrix.getWidth(), matrix.getHeight(), width, height);
+    }
+
+    /**
+     * 按照矩阵的模块数计算显示尺寸，用于只保留了 XObject 边框的情况
+     *
+     * @param columns 矩阵的宽度（模块数）
+     * @param rows    矩阵的高度（模块数），一维条码为 1
+     * @param width   设置的宽度，0 表示没有设置
+     * @param height  设置的高度，0 表示没有设置
+     * @return {宽, 高}
+     */
+    public static float[] displaySize(float columns, float rows, float width, float height) {
+        if (rows == 1) {
+            return new float[]{width > 0 ? width : columns, height > 0 ? height : 36};
+        }
+        float ratio = rows / columns;
+        if (width <= 0 && height <= 0) {
+            width = 72;
+        }
+        if (width <= 0) {
+            width = height / ratio;
+        } else if (height <= 0) {
+            height = width * ratio;
+        }
+        return new float[]{width, height};
+    }
+
+    /**
+     * 把条码矩阵输出为 SVG
+     *
+     * @param matrix 条码矩阵
+     * @param width  显示宽度(pt)
+     * @param height 显示高度(pt)
+     * @return SVG 元素
+     */
+    public static String toSvg(BitMatrix matrix, float width, float height) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<svg xmlns=\"http://www.w3.org/2000/svg\" viewBox=\"0 0 ")
+                .append(matrix.getWidth()).append(' ').append(matrix.getHeight())
+                .append("\" width=\"").append(width).append("pt\" height=\"")
+                .append(height).append("pt\" preserveAspectRatio=\"none\"")
+                .append(" shape-rendering=\"crispEdges\"><path d=\"");
+        for (int[] rect : rectangles(matrix)) {
+            builder.append('M').append(rect[0]).append(' ').append(rect[1])
+                    .append('h').append(rect[2]).append('v').append(rect[3])
+                    .append('h').append(-rect[2]).append('z');
+        }
+        builder.append("\"/></svg>");
+        return builder.toString();
+    }
+
+    /**
+     * 计算深色区域的矩形
+     *
+     * @return 矩形列表，每个矩形为 {x, y, 宽, 高}，y 从上往下
+     */
+    static List<int[]> rectangles(BitMatrix matrix) {
+        List<int[]> result = new ArrayList<>();
+        // 上一行还可以向下延伸的矩形
+        List<int[]> open = new ArrayList<>();
+        List<int[]> next = new ArrayList<>();
+        for (int y = 0; y < matrix.getHeight(); y++) {
+            int x = 0;
+            int i = 0;
+            while (x < matrix.getWidth()) {
+                if (!matrix.get(x, y)) {
+                    x++;
+                    continue;
+                }
+                int start = x;
+                while (x < matrix.getWidth() && matrix.get(x, y)) {
+                    x++;
+                }
+                // open 按照 x 排序，跳过已经在左侧结束的矩形
+                while (i < open.size() && open.get(i)[0] < start) {
+                    result.add(open.get(i++));
+                }
+                if (i < open.size() && open.get(i)[0] == start
+                        && open.get(i)[2] == x - start) {
+                    int[] rect = open.get(i++);
+                    rect[3]++;
+                    next.add(rect);
+                } else {
+                    next.add(new int[]{start, y, x - start, 1});
+                }
+            }
+            while (i < open.size()) {
+                result.add(open.get(i++));
+            }
+            List<int[]> swap = open;
+            open = next;
+            next = swap;
+            next.clear();
+        }
+        result.addAll(open);
+        return result;
+    }
+}
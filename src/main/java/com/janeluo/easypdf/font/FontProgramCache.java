@@ -0,0 +1,208 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.font;
+
+import com.itextpdf.io.font.FontProgram;
+import com.itextpdf.io.font.FontProgramFactory;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程级字体程序缓存
+ * <p>
+ * 字体文件(例如 SIMSUN.TTC)通常有好几兆，解析一次代价很高。这个类在整个 JVM
+ * 中缓存解析后的 FontProgram，所有 PDFDoc 实例共享。字体在第一次使用时才加载，
+ * 文件系统中的字体通过内存映射读取，只有 jar 包中的字体资源才会读入堆内存。
+ * 每个文档仍然通过 {@link PdfFontCache} 创建自己的 PdfFont 来做子集化。
+ * <p>
+ * 这个类是线程安全的。
+ */
+public class FontProgramCache {
+    private static final ConcurrentMap<String, CachedProgram> programs =
+            new ConcurrentHashMap<>();
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+    private static final AtomicLong residentBytes = new AtomicLong();
+    private static final AtomicLong mappedBytes = new AtomicLong();
+
+    /**
+     * 取得字体程序，第一次访问时读取并解析字体文件
+     *
+     * @param fontProgram 字体文件路径或 classpath 资源，TTC 文件需要带上序号，
+     *                    例如 "font/SIMSUN.TTC,0"
+     * @return 解析后的字体程序
+     * @throws IOException 字体文件读取或解析失败
+     */
+    public static FontProgram get(String fontProgram) throws IOException {
+        CachedProgram cached = programs.get(fontProgram);
+        if (cached != null) {
+            hitCount.incrementAndGet();
+            return cached.program;
+        }
+        try {
+            cached = programs.computeIfAbsent(fontProgram, key -> {
+                try {
+                    CachedProgram loaded = load(key);
+                    missCount.incrementAndGet();
+                    return loaded;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return cached.program;
+    }
+
+    /**
+     * 预先加载字体，用于预热
+     *
+     * @param fontProgram 字体文件路径
+     * @throws IOException 字体文件读取或解析失败
+     */
+    public static void preload(String fontProgram) throws IOException {
+        if (!programs.containsKey(fontProgram)) {
+            get(fontProgram);
+        }
+    }
+
+    /**
+     * @return 缓存命中次数
+     */
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * @return 缓存未命中(实际读取解析字体文件)次数
+     */
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * @return 读入堆内存的字体文件原始字节总大小(jar 包中的字体资源)
+     */
+    public static long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * @return 通过内存映射读取的字体文件总大小
+     */
+    public static long getMappedBytes() {
+        return mappedBytes.get();
+    }
+
+    /**
+     * 字体是否通过内存映射读取
+     * <p>
+     * iText 对映射文件的读取不是线程安全的，多个文档同时对同一个映射字体
+     * 做子集化时需要互斥，参考 {@link PdfFontCache#flush()}。
+     *
+     * @param fontProgram 字体文件路径
+     * @return 已经加载并且是内存映射返回 true
+     */
+    public static boolean isMapped(String fontProgram) {
+        CachedProgram cached = programs.get(fontProgram);
+        return cached != null && cached.mapped;
+    }
+
+    /**
+     * @return 缓存的字体数量
+     */
+    public static int size() {
+        return programs.size();
+    }
+
+    /**
+     * 清空缓存以及统计数据，已经创建的 PdfFont 不受影响
+     */
+    public static void clear() {
+        programs.clear();
+        hitCount.set(0);
+        missCount.set(0);
+        residentBytes.set(0);
+        mappedBytes.set(0);
+    }
+
+    private static CachedProgram load(String fontProgram) throws IOException {
+        String path = fontProgram;
+        int ttcIndex = -1;
+
+        // TTC 字体集合，格式为 "path,index"
+        int comma = fontProgram.lastIndexOf(',');
+        if (comma > 0 && fontProgram.substring(0, comma).toLowerCase().endsWith(".ttc")) {
+            path = fontProgram.substring(0, comma);
+            try {
+                ttcIndex = Integer.parseInt(fontProgram.substring(comma + 1).trim());
+            } catch (NumberFormatException ex) {
+                throw new IOException("Font '" + fontProgram + "' has invalid ttc index.");
+            }
+        }
+
+        // 和 iText 的规则一样，先找文件，找不到再找 classpath 资源
+        File file = new File(path);
+        if (!file.canRead()) {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            if (loader == null) {
+                loader = FontProgramCache.class.getClassLoader();
+            }
+            URL url = loader.getResource(path);
+            if (url == null) {
+                throw new IOException("Font '" + path + "' not found as file or resource.");
+            }
+            if (!"file".equals(url.getProtocol())) {
+                // jar 包中的资源无法映射，只能读入内存
+                byte[] bytes;
+                try (InputStream stream = url.openStream()) {
+                    bytes = IOUtils.toByteArray(stream);
+                }
+                FontProgram program = ttcIndex >= 0
+                        ? FontProgramFactory.createFont(bytes, ttcIndex, false)
+                        : FontProgramFactory.createFont(bytes, false);
+                residentBytes.addAndGet(bytes.length);
+                return new CachedProgram(program, false);
+            }
+            try {
+                file = new File(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException("Font '" + path + "' has invalid location.", e);
+            }
+        }
+
+        // 通过路径加载时 iText 使用内存映射读取字体文件，字体数据不会复制到堆中
+        String filename = file.getAbsolutePath();
+        FontProgram program = ttcIndex >= 0
+                ? FontProgramFactory.createFont(filename, ttcIndex, false)
+                : FontProgramFactory.createFont(filename, false);
+        mappedBytes.addAndGet(file.length());
+        return new CachedProgram(program, true);
+    }
+
+    private static final class CachedProgram {
+        private final FontProgram program;
+        private final boolean mapped;
+
+        CachedProgram(FontProgram program, boolean mapped) {
+            this.program = program;
+            this.mapped = mapped;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.font;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 字体注册表
+ * <p>
+ * 将模板中 font-family 属性使用的字体名称映射到字体文件或 classpath 资源。
+ * 注册只是记录映射关系，字体在第一次被使用时才通过 {@link FontProgramCache}
+ * 加载。字体名称不区分大小写。
+ * <p>
+ * 默认注册了黑体(hei, heiti)和宋体(song, songti)，应用程序可以在启动时
+ * 注册自己的字体，例如：
+ * <pre>
+ * FontRegistry.register("/usr/share/fonts/corp/CorpSans.ttf", "corp", "corp-sans");
+ * </pre>
+ * 这个类是线程安全的。
+ */
+public class FontRegistry {
+    public static final String FAMILY_HEI = "heiti";
+    public static final String FAMILY_SONG = "songti";
+
+    static final String FONT_PROGRAM_HEI = "font/SIMHEI.TTF";
+    static final String FONT_PROGRAM_SONG = "font/SIMSUN.TTC,0";
+
+    private static final ConcurrentMap<String, String> families = new ConcurrentHashMap<>();
+
+    static {
+        register(FONT_PROGRAM_HEI, FAMILY_HEI, "hei");
+        register(FONT_PROGRAM_SONG, FAMILY_SONG, "song");
+    }
+
+    /**
+     * 注册字体
+     *
+     * @param fontProgram 字体文件路径或 classpath 资源，TTC 文件需要带上序号，
+     *                    例如 "font/SIMSUN.TTC,0"
+     * @param names       字体名称及别名，模板中通过 font-family 属性引用
+     */
+    public static void register(String fontProgram, String... names) {
+        if (fontProgram == null || names == null) {
+            throw new IllegalArgumentException();
+        }
+        for (String name : names) {
+            families.put(normalize(name), fontProgram);
+        }
+    }
+
+    /**
+     * 取消注册字体，已经加载的字体程序仍然保留在 {@link FontProgramCache} 中
+     *
+     * @param name 字体名称
+     */
+    public static void unregister(String name) {
+        if (name != null) {
+            families.remove(normalize(name));
+        }
+    }
+
+    /**
+     * 查找字体名称对应的字体文件
+     *
+     * @param name 字体名称
+     * @return 字体文件路径，没有注册则返回 null
+     */
+    public static String getFontProgram(String name) {
+        if (name == null) {
+            return null;
+        }
+        return families.get(normalize(name));
+    }
+
+    /**
+     * @param name 字体名称
+     * @return 字体是否已经注册
+     */
+    public static boolean contains(String name) {
+        return getFontProgram(name) != null;
+    }
+
+    /**
+     * @return 所有已注册的字体名称
+     */
+    public static Set<String> getNames() {
+        return Collections.unmodifiableSet(families.keySet());
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
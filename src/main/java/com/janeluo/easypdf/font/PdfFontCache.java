@@ -0,0 +1,141 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.font;
+
+import com.itextpdf.kernel.font.PdfFont;
+import com.itextpdf.kernel.font.PdfFontFactory;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 文档级字体缓存
+ * <p>
+ * iText 的 PdfFont 对象在第一次使用后就和所属的 PdfDocument 绑定，
+ * 不能跨文档共享。这个类在一个文档的生命周期内(从 open() 到 close())
+ * 缓存 PdfFont，保证同一种字体在一个文档中只创建、子集化并嵌入一次。
+ * <p>
+ * 字体文件的读取和解析由进程级的 {@link FontProgramCache} 负责，
+ * 这里只为每个文档创建各自的 PdfFont。
+ * <p>
+ * 这个类不是线程安全的，一个文档只能在一个线程中生成。
+ */
+public class PdfFontCache {
+    private final Map<FontKey, PdfFont> fonts = new HashMap<>();
+
+    /**
+     * 取得字体，如果本文档中还没有创建过，则创建并缓存
+     *
+     * @param fontProgram 字体文件路径，TTC 文件需要带上序号，例如 "font/SIMSUN.TTC,0"
+     * @param encoding    编码
+     * @param strategy    嵌入策略
+     * @return PdfFont 对象
+     * @throws IOException 字体文件读取失败
+     */
+    public PdfFont getFont(String fontProgram, String encoding,
+                           PdfFontFactory.EmbeddingStrategy strategy) throws IOException {
+        FontKey key = new FontKey(fontProgram, encoding, strategy);
+        PdfFont font = fonts.get(key);
+        if (font == null) {
+            font = PdfFontFactory.createFont(
+                    FontProgramCache.get(fontProgram), encoding, strategy);
+            fonts.put(key, font);
+        }
+        return font;
+    }
+
+    /**
+     * 按字体名称取得字体，参考 {@link FontRegistry}
+     *
+     * @param family   字体名称
+     * @param encoding 编码
+     * @param strategy 嵌入策略
+     * @return PdfFont 对象
+     * @throws IOException 字体没有注册或者字体文件读取失败
+     */
+    public PdfFont getFamilyFont(String family, String encoding,
+                                 PdfFontFactory.EmbeddingStrategy strategy) throws IOException {
+        String fontProgram = FontRegistry.getFontProgram(family);
+        if (fontProgram == null) {
+            throw new IOException("Font family '" + family + "' unknown!");
+        }
+        return getFont(fontProgram, encoding, strategy);
+    }
+
+    /**
+     * 在文档关闭之前完成字体的子集化和写出
+     * <p>
+     * 内存映射的字体程序由多个文档共享，iText 对映射文件的读取不是线程安全的，
+     * 因此对这些字体的子集化需要互斥。其它字体在文档关闭时由 iText 正常处理。
+     */
+    public void flush() {
+        for (Map.Entry<FontKey, PdfFont> entry : fonts.entrySet()) {
+            PdfFont font = entry.getValue();
+            if (font.getPdfObject().getIndirectReference() == null) {
+                continue;
+            }
+            if (FontProgramCache.isMapped(entry.getKey().fontProgram)) {
+                synchronized (font.getFontProgram()) {
+                    font.flush();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 本文档已经创建的字体数量
+     */
+    public int size() {
+        return fonts.size();
+    }
+
+    /**
+     * 文档关闭后清空缓存，释放对 PdfFont 的引用
+     */
+    public void clear() {
+        fonts.clear();
+    }
+
+    /**
+     * 字体缓存的键：字体、编码、嵌入策略
+     */
+    private static final class FontKey {
+        private final String fontProgram;
+        private final String encoding;
+        private final PdfFontFactory.EmbeddingStrategy strategy;
+
+        FontKey(String fontProgram, String encoding,
+                PdfFontFactory.EmbeddingStrategy strategy) {
+            this.fontProgram = fontProgram;
+            this.encoding = encoding;
+            this.strategy = strategy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof FontKey)) {
+                return false;
+            }
+            FontKey other = (FontKey) o;
+            return fontProgram.equals(other.fontProgram)
+                    && Objects.equals(encoding, other.encoding)
+                    && strategy == other.strategy;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fontProgram, encoding, strategy);
+        }
+    }
+}
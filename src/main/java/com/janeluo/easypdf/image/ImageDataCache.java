@@ -0,0 +1,247 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.image;
+
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程级图片缓存
+ * <p>
+ * 缓存解码后的 ImageData，所有文档共享，例如每张发票上都有的 logo 只需要
+ * 读取和解码一次。缓存的键为图片来源以及文件的修改时间，文件被修改后会重新读取。
+ * 缓存按照图片数据的总字节数限制大小，超过上限时淘汰最久没有使用的图片(LRU)。
+ * <p>
+ * 每个文档仍然用缓存的 ImageData 创建自己的 Image 元素。这个类是线程安全的。
+ */
+public class ImageDataCache {
+    /**
+     * 默认的缓存上限，64M
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final LinkedHashMap<CacheKey, CachedImage> images =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long currentBytes = 0;
+
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+    private static final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * 取得图片来源对应的 ImageData，没有缓存则读取并解码
+     *
+     * @param src 图片文件路径或者 URL
+     * @return 解码后的图片
+     * @throws IOException 图片读取失败
+     */
+    public static ImageData get(String src) throws IOException {
+        return get(src, null, () -> create(src));
+    }
+
+    /**
+     * 取得缓存的图片，没有缓存则通过 loader 生成
+     * <p>
+     * 用于缓存对原始图片加工(例如缩小、重新压缩)后的结果，variant 用于区分同一个来源
+     * 的不同加工参数。
+     *
+     * @param src     图片文件路径或者 URL
+     * @param variant 加工参数，原始图片为 null
+     * @param loader  图片生成函数，返回 null 表示不能生成，这时不缓存
+     * @return 图片，loader 返回 null 时为 null
+     * @throws IOException 图片读取失败
+     */
+    public static ImageData get(String src, String variant, Loader loader) throws IOException {
+        CacheKey key = new CacheKey(src, lastModified(src), variant);
+        synchronized (images) {
+            CachedImage cached = images.get(key);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                return cached.data;
+            }
+        }
+        // 在锁外解码，避免阻塞其它线程，并发未命中时可能重复解码，结果相同
+        missCount.incrementAndGet();
+        ImageData data = loader.load();
+        if (data != null) {
+            put(key, data);
+        }
+        return data;
+    }
+
+    /**
+     * 设置缓存上限
+     *
+     * @param bytes 图片数据总字节数上限，0 表示不缓存
+     */
+    public static void setMaxBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException();
+        }
+        synchronized (images) {
+            maxBytes = bytes;
+            evict();
+        }
+    }
+
+    public static long getMaxBytes() {
+        synchronized (images) {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * @return 缓存中图片数据的总字节数
+     */
+    public static long getCurrentBytes() {
+        synchronized (images) {
+            return currentBytes;
+        }
+    }
+
+    /**
+     * @return 缓存的图片数量
+     */
+    public static int size() {
+        synchronized (images) {
+            return images.size();
+        }
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    public static long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * 清空缓存以及统计数据
+     */
+    public static void clear() {
+        synchronized (images) {
+            images.clear();
+            currentBytes = 0;
+        }
+        hitCount.set(0);
+        missCount.set(0);
+        evictionCount.set(0);
+    }
+
+    private static void put(CacheKey key, ImageData data) {
+        long size = sizeOf(data);
+        synchronized (images) {
+            if (size > maxBytes) {
+                return;
+            }
+            CachedImage prev = images.put(key, new CachedImage(data, size));
+            if (prev != null) {
+                currentBytes -= prev.size;
+            }
+            currentBytes += size;
+            evict();
+        }
+    }
+
+    private static void evict() {
+        Iterator<Map.Entry<CacheKey, CachedImage>> it = images.entrySet().iterator();
+        while (currentBytes > maxBytes && it.hasNext()) {
+            currentBytes -= it.next().getValue().size;
+            it.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private static ImageData create(String src) throws IOException {
+        try {
+            return ImageDataFactory.create(src);
+        } catch (com.itextpdf.io.IOException e) {
+            throw new IOException("Read image '" + src + "' failed.", e);
+        }
+    }
+
+    private static long sizeOf(ImageData data) {
+        byte[] bytes = data.getData();
+        if (bytes != null) {
+            return bytes.length;
+        }
+        return (long) data.getWidth() * (long) data.getHeight()
+                * Math.max(1, data.getBpc()) / 8;
+    }
+
+    /**
+     * 本地文件返回修改时间，URL 返回 0
+     */
+    private static long lastModified(String src) {
+        File file = new File(src);
+        return file.isFile() ? file.lastModified() : 0;
+    }
+
+    /**
+     * 图片生成函数，返回 null 表示不能生成
+     */
+    public interface Loader {
+        ImageData load() throws IOException;
+    }
+
+    private static final class CachedImage {
+        private final ImageData data;
+        private final long size;
+
+        CachedImage(ImageData data, long size) {
+            this.data = data;
+            this.size = size;
+        }
+    }
+
+    private static final class CacheKey {
+        private final String src;
+        private final long lastModified;
+        private final String variant;
+
+        CacheKey(String src, long lastModified, String variant) {
+            this.src = src;
+            this.lastModified = lastModified;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return lastModified == other.lastModified
+                    && src.equals(other.src)
+                    && Objects.equals(variant, other.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(src, lastModified, variant);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.image;
+
+import lombok.Data;
+import org.xml.sax.Attributes;
+
+/**
+ * 图片处理选项
+ * <p>
+ * 嵌入 PDF 之前按照渲染尺寸对图片做缩小和重新压缩，参考 {@link ImageProcessor}。
+ * 文档级的默认值通过 TextParser.setImageOptions() 设置，单个 img 元素可以通过
+ * dpi、max-pixels、quality 属性覆盖。
+ */
+@Data
+public class ImageOptions {
+    /**
+     * 目标分辨率，按照渲染尺寸计算需要的像素数，0 表示不限制
+     */
+    private int dpi = 0;
+    /**
+     * 最大像素数(宽 x 高)，0 表示不限制
+     */
+    private long maxPixels = 0;
+    /**
+     * 重新压缩为 JPEG 时的质量，0.0 - 1.0
+     */
+    private float quality = 0.85f;
+
+    public ImageOptions() {
+    }
+
+    public ImageOptions(int dpi, long maxPixels, float quality) {
+        this.dpi = dpi;
+        this.maxPixels = maxPixels;
+        this.quality = quality;
+    }
+
+    /**
+     * @return 是否需要处理图片
+     */
+    public boolean isEnabled() {
+        return dpi > 0 || maxPixels > 0;
+    }
+
+    /**
+     * 用 img 元素的属性覆盖默认选项
+     *
+     * @param attrs img 元素属性
+     * @return 新的选项对象，没有覆盖时返回自身
+     */
+    public ImageOptions merge(Attributes attrs) {
+        String dpiValue = attrs.getValue("dpi");
+        String pixelsValue = attrs.getValue("max-pixels");
+        String qualityValue = attrs.getValue("quality");
+        if (dpiValue == null && pixelsValue == null && qualityValue == null) {
+            return this;
+        }
+        ImageOptions options = new ImageOptions(dpi, maxPixels, quality);
+        try {
+            if (dpiValue != null) {
+                options.dpi = Integer.parseInt(dpiValue.trim());
+            }
+            if (pixelsValue != null) {
+                options.maxPixels = Long.parseLong(pixelsValue.trim());
+            }
+            if (qualityValue != null) {
+                options.quality = Float.parseFloat(qualityValue.trim());
+            }
+        } catch (NumberFormatException ex) {
+            System.err.println("img dpi/max-pixels/quality attribute invalid.");
+        }
+        return options;
+    }
+}
@@ -0,0 +1,104 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.image;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 图片预取
+ * <p>
+ * 在排版之前收集模板中所有的图片，放到一个线程数有限的线程池中并行读取、解码、处理，
+ * 排版到图片时只有在图片还没有处理完成的情况下才需要等待。
+ * <p>
+ * 每次生成文档使用一个实例，线程池由所有实例共享。
+ */
+public class ImagePrefetcher {
+    private static final int THREADS =
+            Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService executor =
+            Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "easypdf-image-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+
+    private final Map<String, Future<ImageProcessor.ProcessedImage>> futures = new HashMap<>();
+
+    /**
+     * 提交一个图片的预取任务，相同的图片只提交一次
+     *
+     * @param src     图片文件路径或者 URL
+     * @param options 处理选项
+     * @param width   渲染宽度(pt)
+     * @param height  渲染高度(pt)
+     */
+    public synchronized void prefetch(String src, ImageOptions options, float width, float height) {
+        String key = key(src, options, width, height);
+        if (!futures.containsKey(key)) {
+            futures.put(key, executor.submit(() -> ImageProcessor.load(src, options, width, height)));
+        }
+    }
+
+    /**
+     * 取得预取的图片，图片还没有处理完成时等待
+     *
+     * @return 处理后的图片，没有预取则返回 null
+     * @throws IOException 图片读取失败
+     */
+    public ImageProcessor.ProcessedImage get(String src, ImageOptions options,
+                                             float width, float height) throws IOException {
+        Future<ImageProcessor.ProcessedImage> future;
+        synchronized (this) {
+            future = futures.get(key(src, options, width, height));
+        }
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting image '" + src + "'.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Load image '" + src + "' failed.", e.getCause());
+        }
+    }
+
+    /**
+     * @return 已经提交的预取任务数量
+     */
+    public synchronized int size() {
+        return futures.size();
+    }
+
+    /**
+     * 图片键，同一个文档中来源、尺寸以及处理选项都相同的图片是同一个图片
+     */
+    public static String key(String src, ImageOptions options, float width, float height) {
+        return src + '|' + width + '|' + height + '|' + options;
+    }
+}
@@ -0,0 +1,203 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.image;
+
+import com.itextpdf.io.image.ImageData;
+import com.itextpdf.io.image.ImageDataFactory;
+import com.itextpdf.io.util.UrlUtil;
+
+import javax.imageio.IIOException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 图片处理
+ * <p>
+ * 在嵌入 PDF 之前，按照图片的渲染尺寸和目标分辨率(dpi)、最大像素数计算需要的像素，
+ * 如果原图更大，则缩小并重新压缩(不透明图片压缩为 JPEG，带透明通道的压缩为 PNG)。
+ * 处理结果通过 {@link ImageDataCache} 缓存，键为图片来源以及处理参数。
+ * <p>
+ * 这个类是线程安全的。
+ */
+public class ImageProcessor {
+    private static final float POINTS_PER_INCH = 72.0f;
+
+    /**
+     * 加载并处理图片
+     *
+     * @param src     图片文件路径或者 URL
+     * @param options 处理选项
+     * @param width   渲染宽度(pt)，0 表示按照图片比例计算或使用原始尺寸
+     * @param height  渲染高度(pt)，0 表示按照图片比例计算或使用原始尺寸
+     * @return 处理后的图片以及渲染尺寸
+     * @throws IOException 图片读取失败
+     */
+    public static ProcessedImage load(String src, ImageOptions options,
+                                      float width, float height) throws IOException {
+        ImageData original = ImageDataCache.get(src);
+        float pixelWidth = original.getWidth();
+        float pixelHeight = original.getHeight();
+
+        // 渲染尺寸，没有指定时和 iText 一样，一个像素对应 1pt
+        float renderWidth = width;
+        float renderHeight = height;
+        if (renderWidth <= 0 && renderHeight <= 0) {
+            renderWidth = pixelWidth;
+            renderHeight = pixelHeight;
+        } else if (renderWidth <= 0) {
+            renderWidth = renderHeight * pixelWidth / pixelHeight;
+        } else if (renderHeight <= 0) {
+            renderHeight = renderWidth * pixelHeight / pixelWidth;
+        }
+
+        if (options == null || !options.isEnabled()) {
+            return new ProcessedImage(original, renderWidth, renderHeight, false);
+        }
+        double scale = 1.0;
+        if (options.getDpi() > 0) {
+            scale = Math.min(scale, renderWidth * options.getDpi() / POINTS_PER_INCH / pixelWidth);
+            scale = Math.min(scale, renderHeight * options.getDpi() / POINTS_PER_INCH / pixelHeight);
+        }
+        if (options.getMaxPixels() > 0) {
+            scale = Math.min(scale, Math.sqrt(options.getMaxPixels() / (pixelWidth * pixelHeight)));
+        }
+        final int targetWidth = Math.max(1, (int) Math.ceil(pixelWidth * scale));
+        final int targetHeight = Math.max(1, (int) Math.ceil(pixelHeight * scale));
+        if (targetWidth >= (int) pixelWidth && targetHeight >= (int) pixelHeight) {
+            return new ProcessedImage(original, renderWidth, renderHeight, false);
+        }
+        final float quality = options.getQuality();
+        String variant = targetWidth + "x" + targetHeight + "q" + quality;
+        ImageData data = ImageDataCache.get(src, variant,
+                () -> resample(src, targetWidth, targetHeight, quality));
+        if (data == null) {
+            return new ProcessedImage(original, renderWidth, renderHeight, false);
+        }
+        return new ProcessedImage(data, renderWidth, renderHeight, true);
+    }
+
+    /**
+     * 缩小并重新压缩图片
+     *
+     * @return 缩小后的图片，ImageIO 无法解码的图片(例如 CMYK JPEG)返回 null，使用原图
+     * @throws IOException 图片读取失败
+     */
+    private static ImageData resample(String src, int width, int height, float quality) throws IOException {
+        BufferedImage source;
+        try {
+            source = ImageIO.read(UrlUtil.toURL(src));
+        } catch (IIOException ex) {
+            // 解码失败，不是读取失败
+            return null;
+        }
+        if (source == null) {
+            return null;
+        }
+        boolean alpha = source.getColorModel().hasAlpha();
+        BufferedImage scaled = scale(source, width, height, alpha);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (alpha) {
+            ImageIO.write(scaled, "png", output);
+        } else {
+            writeJpeg(scaled, quality, output);
+        }
+        return ImageDataFactory.create(output.toByteArray());
+    }
+
+    /**
+     * 逐步减半缩小，比一次双线性插值质量好，又比区域平均快得多
+     */
+    private static BufferedImage scale(BufferedImage source, int width, int height, boolean alpha) {
+        int type = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING,
+                        RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, float quality,
+                                  ByteArrayOutputStream output) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("No jpeg image writer.");
+        }
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(Math.max(0.0f, Math.min(1.0f, quality)));
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * 处理结果：图片数据以及渲染尺寸
+     */
+    public static class ProcessedImage {
+        private final ImageData data;
+        private final float width;
+        private final float height;
+        private final boolean resampled;
+
+        ProcessedImage(ImageData data, float width, float height, boolean resampled) {
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            this.resampled = resampled;
+        }
+
+        public ImageData getData() {
+            return data;
+        }
+
+        public float getWidth() {
+            return width;
+        }
+
+        public float getHeight() {
+            return height;
+        }
+
+        /**
+         * @return 图片是否经过缩小，缩小后需要显式设置渲染尺寸
+         */
+        public boolean isResampled() {
+            return resampled;
+        }
+    }
+}
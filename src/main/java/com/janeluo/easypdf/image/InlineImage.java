@@ -0,0 +1,120 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.image;
+
+import org.apache.commons.io.input.CharSequenceInputStream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 数据源中的内联图片
+ * <p>
+ * img 元素可以通过 id 属性引用 JSON 数据中的图片，值为 base64 字符串
+ * (可以带有 "data:image/png;base64," 前缀)或者字节数组。base64 以流的方式解码，
+ * 解码的同时计算内容摘要，内容相同的图片在一个文档中只嵌入一次。
+ */
+public class InlineImage {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final byte[] data;
+    private final String hash;
+
+    private InlineImage(byte[] data, String hash) {
+        this.data = data;
+        this.hash = hash;
+    }
+
+    /**
+     * @return 图片数据
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return 图片内容的 SHA-1 摘要(十六进制)
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * 解码数据源中的图片
+     *
+     * @param value base64 字符串或者字节数组
+     * @return 内联图片
+     * @throws IOException 数据格式不正确
+     */
+    public static InlineImage decode(Object value) throws IOException {
+        MessageDigest digest = newDigest();
+        if (value instanceof byte[]) {
+            byte[] data = (byte[]) value;
+            return new InlineImage(data, toHex(digest.digest(data)));
+        }
+        if (!(value instanceof CharSequence)) {
+            throw new IOException("Inline image must be a base64 string or bytes.");
+        }
+        CharSequence chars = (CharSequence) value;
+        int start = 0;
+        if (chars.length() > 5 && "data:".contentEquals(chars.subSequence(0, 5))) {
+            int comma = indexOf(chars, ',');
+            if (comma < 0) {
+                throw new IOException("Inline image data URI invalid.");
+            }
+            start = comma + 1;
+        }
+        CharSequence base64 = start == 0 ? chars : chars.subSequence(start, chars.length());
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(base64.length() / 4 * 3);
+        try (InputStream input = Base64.getMimeDecoder().wrap(
+                new CharSequenceInputStream(base64, StandardCharsets.US_ASCII, 8192))) {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) > 0) {
+                digest.update(buffer, 0, count);
+                output.write(buffer, 0, count);
+            }
+        } catch (IllegalArgumentException ex) {
+            throw new IOException("Inline image is not valid base64.", ex);
+        }
+        return new InlineImage(output.toByteArray(), toHex(digest.digest()));
+    }
+
+    private static int indexOf(CharSequence chars, char ch) {
+        for (int i = 0; i < chars.length(); i++) {
+            if (chars.charAt(i) == ch) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0f];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+}
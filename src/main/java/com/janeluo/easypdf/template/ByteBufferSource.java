@@ -0,0 +1,55 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.template;
+
+import com.itextpdf.io.source.IRandomAccessSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 基于 ByteBuffer 的随机读取源
+ * <p>
+ * 每个 PdfReader 使用共享内容的一个 duplicate，读取位置互不影响。
+ * 内容由所有文档共享，因此 close() 不释放任何资源。
+ */
+class ByteBufferSource implements IRandomAccessSource {
+    private final ByteBuffer buffer;
+
+    ByteBufferSource(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int get(long position) {
+        if (position >= buffer.limit()) {
+            return -1;
+        }
+        return buffer.get((int) position) & 0xff;
+    }
+
+    @Override
+    public int get(long position, byte[] bytes, int off, int len) {
+        if (position >= buffer.limit()) {
+            return -1;
+        }
+        int count = (int) Math.min(len, buffer.limit() - position);
+        buffer.position((int) position);
+        buffer.get(bytes, off, count);
+        return count;
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public void close() {
+    }
+}
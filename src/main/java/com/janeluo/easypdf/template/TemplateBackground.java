@@ -0,0 +1,77 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.template;
+
+import com.itextpdf.kernel.events.Event;
+import com.itextpdf.kernel.events.IEventHandler;
+import com.itextpdf.kernel.events.PdfDocumentEvent;
+import com.itextpdf.kernel.geom.Rectangle;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfPage;
+import com.itextpdf.kernel.pdf.canvas.PdfCanvas;
+import com.itextpdf.kernel.pdf.xobject.PdfFormXObject;
+
+import java.io.IOException;
+
+/**
+ * 以模板的一页作为背景
+ * <p>
+ * 模板页面在每个文档中只导入一次(Form XObject)，文档的每一页在开始时引用它作为背景，
+ * 因此换页、内容溢出产生的新页面也有背景，背景在输出文件中只保存一份。
+ */
+public class TemplateBackground implements IEventHandler {
+    private final PdfFormXObject background;
+    private final Rectangle pageSize;
+
+    private TemplateBackground(PdfFormXObject background, Rectangle pageSize) {
+        this.background = background;
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * 导入模板页面，并注册为文档每一页的背景
+     *
+     * @param template 模板
+     * @param page     模板页码，从 1 开始
+     * @param document 生成的文档，还没有添加页面
+     * @return 背景
+     * @throws IOException 模板读取失败，或者模板没有该页
+     */
+    public static TemplateBackground install(TemplatePdf template, int page,
+                                             PdfDocument document) throws IOException {
+        if (page < 1 || page > template.getNumberOfPages()) {
+            throw new IOException("Template page " + page + " out of range, template has "
+                    + template.getNumberOfPages() + " pages.");
+        }
+        try (PdfDocument source = new PdfDocument(template.newReader())) {
+            PdfPage sourcePage = source.getPage(page);
+            TemplateBackground background = new TemplateBackground(
+                    sourcePage.copyAsFormXObject(document), sourcePage.getPageSize());
+            document.addEventHandler(PdfDocumentEvent.START_PAGE, background);
+            return background;
+        }
+    }
+
+    /**
+     * @return 模板页面的大小
+     */
+    public Rectangle getPageSize() {
+        return pageSize;
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        PdfDocumentEvent documentEvent = (PdfDocumentEvent) event;
+        PdfPage page = documentEvent.getPage();
+        PdfCanvas canvas = new PdfCanvas(page.newContentStreamBefore(),
+                page.getResources(), documentEvent.getDocument());
+        canvas.addXObjectAt(background, 0, 0);
+        canvas.release();
+    }
+}
@@ -0,0 +1,73 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.template;
+
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.ReaderProperties;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 解析过的模板 PDF
+ * <p>
+ * 模板的内容在内存中只保存一份，由所有文档共享。iText 的 PdfReader 在打开文档后
+ * 会被该文档修改，不能在文档之间共享，因此每个文档通过 {@link #newReader()}
+ * 在共享的内容上创建自己的 PdfReader，不需要复制内容。
+ * <p>
+ * 内容可以在堆中，也可以是内存映射的模板文件，后者只有实际读取到的部分才会载入内存。
+ */
+public class TemplatePdf {
+    private final ByteBuffer data;
+    private final long checksum;
+    private final int numberOfPages;
+    private final boolean mapped;
+
+    TemplatePdf(ByteBuffer data, long checksum, int numberOfPages, boolean mapped) {
+        this.data = data.asReadOnlyBuffer();
+        this.checksum = checksum;
+        this.numberOfPages = numberOfPages;
+        this.mapped = mapped;
+    }
+
+    /**
+     * 创建读取模板的 PdfReader，每个文档使用一个
+     *
+     * @return PdfReader
+     * @throws IOException 模板读取失败
+     */
+    public PdfReader newReader() throws IOException {
+        return new PdfReader(new ByteBufferSource(data.duplicate()), new ReaderProperties());
+    }
+
+    /**
+     * @return 模板内容的字节数
+     */
+    public long getLength() {
+        return data.limit();
+    }
+
+    /**
+     * @return 模板内容的 CRC32 校验和，内存映射的模板不计算校验和，返回 0
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    public int getNumberOfPages() {
+        return numberOfPages;
+    }
+
+    /**
+     * @return 是否是内存映射的模板文件
+     */
+    public boolean isMapped() {
+        return mapped;
+    }
+}
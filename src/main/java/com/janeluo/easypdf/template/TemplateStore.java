@@ -0,0 +1,324 @@
+/* Copyright (c) 2021 janeluo
+ * easy-pdf is licensed under Mulan PSL v2.
+ * You can use this software according to the terms and conditions of the Mulan PSL v2.
+ * You may obtain a copy of Mulan PSL v2 at:
+ *          http://license.coscl.org.cn/MulanPSL2
+ * THIS SOFTWARE IS PROVIDED ON AN "AS IS" BASIS, WITHOUT WARRANTIES OF ANY KIND, EITHER EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO NON-INFRINGEMENT, MERCHANTABILITY OR FIT FOR A PARTICULAR PURPOSE.
+ * See the Mulan PSL v2 for more details.
+ */
+package com.janeluo.easypdf.template;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 进程级模板 PDF 缓存
+ * <p>
+ * 每个模板只读取、解析一次，缓存的键为模板的来源(文件路径)以及内容的校验和，
+ * 以输入流提供的模板只使用校验和。模板文件被修改后会重新读取。
+ * <p>
+ * 第一次解析时如果模板的交叉引用表损坏(iText 需要扫描整个文件重建)，
+ * 缓存的是重新保存后的模板，之后的文档不需要再次重建。
+ * 缓存按照模板内容的总字节数限制大小，超过上限时淘汰最久没有使用的模板(LRU)。
+ * 较大的模板可以通过 {@link #get(Path)} 内存映射，不占用堆内存。这个类是线程安全的。
+ */
+public class TemplateStore {
+    /**
+     * 默认的缓存上限，128M
+     */
+    public static final long DEFAULT_MAX_BYTES = 128L * 1024 * 1024;
+
+    private static final LinkedHashMap<String, TemplatePdf> templates =
+            new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 模板文件的状态，文件没有修改时不需要重新读取计算校验和
+     */
+    private static final Map<String, FileState> files = new ConcurrentHashMap<>();
+    /**
+     * 内存映射的模板，键为文件的绝对路径
+     */
+    private static final Map<String, MappedTemplate> mapped = new ConcurrentHashMap<>();
+    private static long maxBytes = DEFAULT_MAX_BYTES;
+    private static long currentBytes = 0;
+
+    private static final AtomicLong hitCount = new AtomicLong();
+    private static final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * 取得模板文件对应的模板
+     *
+     * @param path 模板文件路径
+     * @return 模板
+     * @throws IOException 模板读取或者解析失败
+     */
+    public static TemplatePdf get(String path) throws IOException {
+        File file = new File(path).getAbsoluteFile();
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        FileState state = files.get(file.getPath());
+        if (state != null && state.lastModified == lastModified && state.length == length) {
+            TemplatePdf template = lookup(state.key);
+            if (template != null) {
+                return template;
+            }
+        }
+        byte[] data = FileUtils.readFileToByteArray(file);
+        long checksum = checksum(data);
+        String key = file.getPath() + '|' + checksum;
+        files.put(file.getPath(), new FileState(lastModified, length, key));
+        return get(key, data, checksum);
+    }
+
+    /**
+     * 取得内存映射的模板文件
+     * <p>
+     * 适用于较大的模板，模板文件只映射一次，由所有文档共享，只有实际读取到的部分才会载入内存，
+     * 不占用堆内存，也不计入缓存上限。为了避免读取整个文件，映射的模板不计算校验和，
+     * 文件的修改时间或者大小变化后重新映射。模板文件在使用中不能被截断。
+     *
+     * @param path 模板文件
+     * @return 模板
+     * @throws IOException 模板读取或者解析失败
+     */
+    public static TemplatePdf get(Path path) throws IOException {
+        Path file = path.toAbsolutePath().normalize();
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        long length = Files.size(file);
+        String key = file.toString();
+
+        MappedTemplate cached = mapped.get(key);
+        if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+            hitCount.incrementAndGet();
+            return cached.template;
+        }
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Template '" + file + "' too large to map.");
+        }
+        missCount.incrementAndGet();
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        }
+        TemplatePdf template = new TemplatePdf(buffer, 0, 0, true);
+        try (PdfDocument document = new PdfDocument(template.newReader())) {
+            template = new TemplatePdf(buffer, 0, document.getNumberOfPages(), true);
+        }
+        mapped.put(key, new MappedTemplate(lastModified, length, template));
+        return template;
+    }
+
+    /**
+     * 取得调用者指定键的模板，命中时不读取输入流
+     * <p>
+     * 缓存不检查输入流的内容，模板内容变化时调用者需要使用新的键。
+     *
+     * @param key    模板的键，例如模板在调用者存储中的名称以及版本
+     * @param stream 模板输入流，只在未命中时读取，读取后不关闭
+     * @return 模板
+     * @throws IOException 模板读取或者解析失败
+     */
+    public static TemplatePdf get(String key, InputStream stream) throws IOException {
+        String cacheKey = "key|" + key;
+        TemplatePdf template = lookup(cacheKey);
+        if (template != null) {
+            return template;
+        }
+        byte[] data = IOUtils.toByteArray(stream);
+        return get(cacheKey, data, checksum(data));
+    }
+
+    /**
+     * 取得输入流中的模板，内容相同的模板共享同一个缓存
+     * <p>
+     * 每次调用都需要读取整个输入流并计算校验和，只省去了解析。
+     * 重复使用的模板应当通过 {@link #get(String)}、{@link #get(Path)}
+     * 或者 {@link #get(String, InputStream)} 取得。
+     *
+     * @param stream 模板输入流，读取后不关闭
+     * @return 模板
+     * @throws IOException 模板读取或者解析失败
+     */
+    public static TemplatePdf get(InputStream stream) throws IOException {
+        byte[] data = IOUtils.toByteArray(stream);
+        long checksum = checksum(data);
+        return get("stream|" + checksum + '|' + data.length, data, checksum);
+    }
+
+    /**
+     * @param checksum 调用者已经计算的 data 的校验和，解析时不再重复计算
+     */
+    private static TemplatePdf get(String key, byte[] data, long checksum) throws IOException {
+        TemplatePdf template = lookup(key);
+        if (template != null) {
+            return template;
+        }
+        // 在锁外解析，并发未命中时可能重复解析，结果相同
+        missCount.incrementAndGet();
+        template = parse(data, checksum);
+        synchronized (templates) {
+            if (template.getLength() <= maxBytes) {
+                TemplatePdf prev = templates.put(key, template);
+                if (prev != null) {
+                    currentBytes -= prev.getLength();
+                }
+                currentBytes += template.getLength();
+                evict();
+            }
+        }
+        return template;
+    }
+
+    private static TemplatePdf lookup(String key) {
+        synchronized (templates) {
+            TemplatePdf template = templates.get(key);
+            if (template != null) {
+                hitCount.incrementAndGet();
+            }
+            return template;
+        }
+    }
+
+    private static TemplatePdf parse(byte[] data, long checksum) throws IOException {
+        TemplatePdf template = new TemplatePdf(ByteBuffer.wrap(data), checksum, 0, false);
+        PdfReader reader = template.newReader();
+        try (PdfDocument document = new PdfDocument(reader)) {
+            if (!reader.hasRebuiltXref()) {
+                return new TemplatePdf(ByteBuffer.wrap(data), checksum,
+                        document.getNumberOfPages(), false);
+            }
+        }
+        // 交叉引用表损坏，重新保存一份结构正确的模板
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        int pages;
+        try (PdfDocument document = new PdfDocument(template.newReader(), new PdfWriter(out))) {
+            pages = document.getNumberOfPages();
+        }
+        return new TemplatePdf(ByteBuffer.wrap(out.toByteArray()), checksum, pages, false);
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+    private static void evict() {
+        while (currentBytes > maxBytes && !templates.isEmpty()) {
+            String key = templates.keySet().iterator().next();
+            currentBytes -= templates.remove(key).getLength();
+        }
+    }
+
+    /**
+     * 设置缓存上限
+     *
+     * @param bytes 模板内容总字节数上限，0 表示不缓存
+     */
+    public static void setMaxBytes(long bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException();
+        }
+        synchronized (templates) {
+            maxBytes = bytes;
+            evict();
+        }
+    }
+
+    public static long getMaxBytes() {
+        synchronized (templates) {
+            return maxBytes;
+        }
+    }
+
+    /**
+     * @return 缓存中模板内容的总字节数
+     */
+    public static long getCurrentBytes() {
+        synchronized (templates) {
+            return currentBytes;
+        }
+    }
+
+    /**
+     * @return 内存映射的模板文件的总字节数
+     */
+    public static long getMappedBytes() {
+        long bytes = 0;
+        for (MappedTemplate cached : mapped.values()) {
+            bytes += cached.length;
+        }
+        return bytes;
+    }
+
+    public static int size() {
+        synchronized (templates) {
+            return templates.size() + mapped.size();
+        }
+    }
+
+    public static long getHitCount() {
+        return hitCount.get();
+    }
+
+    public static long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * 清空缓存以及统计数据
+     */
+    public static void clear() {
+        synchronized (templates) {
+            templates.clear();
+            currentBytes = 0;
+        }
+        files.clear();
+        mapped.clear();
+        hitCount.set(0);
+        missCount.set(0);
+    }
+
+    private static class MappedTemplate {
+        final long lastModified;
+        final long length;
+        final TemplatePdf template;
+
+        MappedTemplate(long lastModified, long length, TemplatePdf template) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.template = template;
+        }
+    }
+
+    private static class FileState {
+        final long lastModified;
+        final long length;
+        final String key;
+
+        FileState(long lastModified, long length, String key) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.key = key;
+        }
+    }
+}
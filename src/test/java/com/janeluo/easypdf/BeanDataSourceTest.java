@@ -0,0 +1,108 @@
+package com.janeluo.easypdf;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BeanDataSourceTest {
+
+    public enum Level {
+        GOLD
+    }
+
+    public static class Address {
+        private final String city;
+
+        public Address(String city) {
+            this.city = city;
+        }
+
+        public String getCity() {
+            return city;
+        }
+    }
+
+    public static class Customer {
+        public String code = "C-1";
+        public String name = "field";
+
+        public String getName() {
+            return "Alice";
+        }
+
+        public int getAge() {
+            return 30;
+        }
+
+        public boolean isVip() {
+            return true;
+        }
+
+        public Level getLevel() {
+            return Level.GOLD;
+        }
+
+        public List<Address> getAddresses() {
+            return Arrays.asList(new Address("Beijing"), new Address("Shanghai"));
+        }
+    }
+
+    /**
+     * 非公开的类通过 MethodHandle 访问
+     */
+    private static class Hidden {
+        public String getSecret() {
+            return "s";
+        }
+    }
+
+    @Test
+    public void pojoProperties() {
+        DataSource source = new BeanDataSource(new Customer());
+        assertEquals("Alice", source.get("name"));
+        assertEquals(30, source.get("age"));
+        assertEquals(true, source.get("vip"));
+        assertEquals("C-1", source.get("code"));
+        assertEquals("Shanghai", source.get(ValuePath.compile("addresses[1].city")));
+        assertEquals("GOLD", ValuePath.text(source.get("level")));
+        assertNull(source.get("class"));
+        assertNull(source.get("missing"));
+        assertNull(source.get(ValuePath.compile("name.bytes")));
+    }
+
+    @Test
+    public void nonPublicClass() {
+        assertEquals("s", new BeanDataSource(new Hidden()).get("secret"));
+    }
+
+    @Test
+    public void mapData() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("customer", new Customer());
+        map.put("total", 12.5);
+        DataSource source = BeanDataSource.of(map);
+        assertTrue(source instanceof MapDataSource);
+        assertEquals("Beijing", source.get(ValuePath.compile("customer.addresses[0].city")));
+        assertSame(source, BeanDataSource.of(source));
+        assertNull(BeanDataSource.of(null));
+    }
+
+    @Test
+    public void renderPojo() throws IOException {
+        String xml = "<textpdf><para><value id=\"name\"/>-<value id=\"age\"/>"
+                + "-<value id=\"addresses[0].city\"/></para></textpdf>";
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        CompiledTemplateTest.RecordingDoc doc = new CompiledTemplateTest.RecordingDoc();
+        template.render(doc, BeanDataSource.of(new Customer()));
+        assertEquals("para:Alice-30-Beijing", doc.blocks.get(0));
+    }
+}
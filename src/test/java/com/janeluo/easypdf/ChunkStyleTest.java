@@ -0,0 +1,77 @@
+package com.janeluo.easypdf;
+
+import com.itextpdf.layout.property.TextAlignment;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ChunkStyleTest {
+
+    private static TextChunk chunk(String... attrs) {
+        TextChunk chunk = new TextChunk();
+        for (int i = 0; i < attrs.length; i += 2) {
+            chunk.addAttr(attrs[i], attrs[i + 1]);
+        }
+        return chunk;
+    }
+
+    @Test
+    public void sameAttributesShareStyle() {
+        ChunkStyle a = chunk("font-style", "bold, underline", "font-size", "14").getStyle();
+        ChunkStyle b = chunk("font-size", "14", "font-style", "bold, underline").getStyle();
+        assertSame(a, b);
+        assertEquals(14, a.fontSize);
+        assertEquals(ChunkStyle.BOLD | ChunkStyle.UNDERLINE, a.fontFlags);
+        assertNotSame(a, chunk("font-style", "italic").getStyle());
+    }
+
+    @Test
+    public void otherAttributesIgnored() {
+        ChunkStyle a = chunk("id", "name", "font-size", "13").getStyle();
+        ChunkStyle b = chunk("id", "phone", "font-size", "13").getStyle();
+        assertSame(a, b);
+        assertNotSame(a, chunk("id", "name", "Font-Style", "bold", "font-size", "13").getStyle());
+    }
+
+    @Test
+    public void defaultsAreInherited() {
+        ChunkStyle style = new TextChunk().getStyle();
+        assertEquals(ChunkStyle.INHERIT, style.fontFlags);
+        assertEquals(0, style.fontSize);
+        assertEquals(-1, style.minlen);
+        assertEquals(1, style.colspan);
+        assertNull(style.alignment);
+        assertNull(style.indent);
+        assertEquals("", style.htmlStyle);
+    }
+
+    @Test
+    public void paragraphAttributes() {
+        ChunkStyle style = chunk("align", "Center", "indent", "22",
+                "space-before", "6", "super", "true", "minlen", "10").getStyle();
+        assertEquals(TextAlignment.CENTER, style.alignment);
+        assertEquals(22f, style.indent, 0f);
+        assertEquals(6f, style.spaceBefore, 0f);
+        assertNull(style.spaceAfter);
+        assertEquals(6f, style.textRise, 0f);
+        assertEquals(8, style.fontSize);
+        assertEquals(10, style.minlen);
+        assertEquals("text-indent: 22px; text-align: Center; ", style.htmlBlockStyle);
+        assertEquals("", style.htmlStyle);
+
+        assertEquals("justify", chunk("align", "justify").getStyle().unknownAlignment);
+    }
+
+    @Test
+    public void valueStyleIsShared() {
+        TextChunk chunk = chunk("id", "name");
+        chunk.setIsValue(true);
+        chunk.setValueFontStyle("bold,underline");
+        TextChunk first = chunk.withValue("Tom");
+        TextChunk second = chunk.withValue("Jerry");
+        assertEquals("Tom", first.getContents());
+        assertSame(first.getAttributes(), second.getAttributes());
+        assertEquals(ChunkStyle.BOLD | ChunkStyle.UNDERLINE, first.getStyle().fontFlags);
+        assertNull(chunk.getAttrs().get("font-style"));
+    }
+}
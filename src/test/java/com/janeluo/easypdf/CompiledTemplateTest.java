@@ -0,0 +1,246 @@
+package com.janeluo.easypdf;
+
+import com.janeluo.easypdf.enums.DocType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CompiledTemplateTest {
+    private static final String XML = "<textpdf>"
+            + "<title>Invoice</title>"
+            + "<para>Name: <value id=\"name\"/></para>"
+            + "<para>Code: <value id=\"code\" font-style=\"italic\"/><span super=\"true\">1</span></para>"
+            + "<pagebreak/>"
+            + "<table columns=\"1,2\"><cell>a</cell><cell>b</cell></table>"
+            + "</textpdf>";
+
+    /**
+     * 记录生成结果的 PDF 文档，不输出 PDF
+     */
+    static class RecordingDoc extends PDFDoc {
+        final List<String> blocks = new ArrayList<>();
+        final List<String> styles = new ArrayList<>();
+        final List<String> cells = new ArrayList<>();
+        int pages = 0;
+        int tables = 0;
+        boolean open = false;
+
+        RecordingDoc() {
+            super(null, new ByteArrayOutputStream());
+        }
+
+        @Override
+        public boolean open() {
+            open = true;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            open = false;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void newPage() {
+            pages++;
+        }
+
+        @Override
+        public void writeBlock(String blockName, List<TextChunk> chunkList) {
+            StringBuilder builder = new StringBuilder(blockName).append(':');
+            for (TextChunk chunk : chunkList) {
+                builder.append(chunk.getContents());
+                if (chunk.isValue()) {
+                    styles.add(chunk.getAttrs().get("font-style"));
+                }
+            }
+            blocks.add(builder.toString());
+        }
+
+        @Override
+        public void writeTable(TextTable table) {
+            tables++;
+        }
+
+        @Override
+        public void beginTable(TextTable table) {
+            tables++;
+        }
+
+        @Override
+        public void addTableCells(List<TextChunk> cells) {
+            for (TextChunk cell : cells) {
+                this.cells.add(cell.getContents());
+            }
+        }
+
+        @Override
+        public void endTable() {
+        }
+    }
+
+    private static DataSource data(String name, String code) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", name);
+        map.put("code", code);
+        return map::get;
+    }
+
+    @Test
+    public void testRenderMany() throws IOException {
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+
+        RecordingDoc first = new RecordingDoc();
+        template.render(first, data("Alice", "A-1"));
+        RecordingDoc second = new RecordingDoc();
+        template.render(second, data("Bob", "B-2"));
+
+        assertEquals("title:Invoice", first.blocks.get(0));
+        assertEquals("para:Name:Alice", first.blocks.get(1));
+        assertEquals("para:Code:A-11", first.blocks.get(2));
+        assertEquals("para:Name:Bob", second.blocks.get(1));
+        assertEquals(1, second.pages);
+        assertEquals(1, second.tables);
+        assertFalse(second.open);
+
+        // 取到值时默认加粗加下划线，模板自己设置的风格不变
+        assertEquals("bold,underline", first.styles.get(0));
+        assertEquals("italic", first.styles.get(1));
+    }
+
+    @Test
+    public void testMissingValue() throws IOException {
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+        RecordingDoc doc = new RecordingDoc();
+        template.render(doc, id -> null);
+        assertEquals("para:Name:", doc.blocks.get(1));
+        assertNull(doc.styles.get(0));
+    }
+
+    @Test
+    public void testValuePaths() throws IOException {
+        String xml = "<textpdf><para><value id=\"customer.address[0].city\"/>"
+                + "-<value id=\"count\"/>-<value id=\"customer\"/></para></textpdf>";
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        RecordingDoc doc = new RecordingDoc();
+        template.render(doc, new JsonDataSource(com.alibaba.fastjson.JSON.parseObject(
+                "{\"customer\":{\"address\":[{\"city\":\"Beijing\"}]},\"count\":3}")));
+        // 对象不能直接显示，保留原来的内容
+        assertEquals("para:Beijing-3-", doc.blocks.get(0));
+    }
+
+    @Test
+    public void testBinaryFormat() throws IOException {
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+        File file = File.createTempFile("easypdf-", ".ctpl");
+        try {
+            try (OutputStream out = new FileOutputStream(file)) {
+                template.writeTo(out);
+            }
+            CompiledTemplate loaded = CompiledTemplate.load(file.toPath());
+
+            RecordingDoc expected = new RecordingDoc();
+            template.render(expected, data("Alice", "A-1"));
+            RecordingDoc actual = new RecordingDoc();
+            loaded.render(actual, data("Alice", "A-1"));
+            assertEquals(expected.blocks, actual.blocks);
+            assertEquals(expected.styles, actual.styles);
+            assertEquals(expected.pages, actual.pages);
+            assertEquals(expected.tables, actual.tables);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testBinaryVersion() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledTemplate.compile(new ByteArrayInputStream(
+                XML.getBytes(StandardCharsets.UTF_8))).writeTo(out);
+        byte[] bytes = out.toByteArray();
+        bytes[5] = 99;
+        TemplateCodec.read(ByteBuffer.wrap(bytes));
+    }
+
+    @Test
+    public void testBinaryCorrupted() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledTemplate.compile(new ByteArrayInputStream(
+                XML.getBytes(StandardCharsets.UTF_8))).writeTo(out);
+        byte[] bytes = out.toByteArray();
+
+        // 字符串表数量为负数
+        byte[] negative = bytes.clone();
+        negative[8] = (byte) 0xFF;
+        // 截断的文件
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+        for (byte[] corrupted : new byte[][]{negative, truncated}) {
+            try {
+                TemplateCodec.read(ByteBuffer.wrap(corrupted));
+                fail();
+            } catch (IOException expected) {
+                assertTrue(expected.getMessage().contains("corrupted"));
+            }
+        }
+    }
+
+    @Test
+    public void testCloseOnFailure() throws IOException {
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+        RecordingDoc doc = new RecordingDoc() {
+            @Override
+            public void newPage() {
+                throw new IllegalStateException("layout failed");
+            }
+        };
+        try {
+            template.render(doc, data("Alice", "A-1"));
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("layout failed", expected.getMessage());
+        }
+        assertFalse(doc.open);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testDeprecatedHandler() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TextParser parser = new TextParser(new ByteArrayInputStream(new byte[0]),
+                (InputStream) null, out);
+        TextParser.newSAXParser().parse(new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)),
+                new TextParserDocHandler(parser, DocType.HTML));
+        assertTrue(out.toString("UTF-8").contains("Invoice"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidRoot() throws IOException {
+        CompiledTemplate.compile(new ByteArrayInputStream(
+                "<para>text</para>".getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,96 @@
+package com.janeluo.easypdf;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ConditionTest {
+    private static DataSource data() {
+        Map<String, Object> customer = new HashMap<>();
+        customer.put("level", "gold");
+        customer.put("orders", Arrays.asList(1, 2));
+        Map<String, Object> data = new HashMap<>();
+        data.put("vip", true);
+        data.put("amount", 1200.5);
+        data.put("count", "3");
+        data.put("empty", "");
+        data.put("zero", 0);
+        data.put("none", Collections.emptyList());
+        data.put("customer", customer);
+        return data::get;
+    }
+
+    private static boolean test(String expression) {
+        return Condition.compile(expression).test(data());
+    }
+
+    @Test
+    public void testTruthy() {
+        assertTrue(test("vip"));
+        assertTrue(test("customer.orders"));
+        assertFalse(test("missing"));
+        assertFalse(test("empty"));
+        assertFalse(test("zero"));
+        assertFalse(test("none"));
+        assertFalse(test("!vip"));
+        assertTrue(test("not missing"));
+    }
+
+    @Test
+    public void testCompare() {
+        assertTrue(test("amount > 1000"));
+        assertTrue(test("amount gt 1000 and amount lt 2000"));
+        assertFalse(test("amount <= 1000"));
+        assertTrue(test("count == 3"));
+        assertTrue(test("count ge 3.0"));
+        assertTrue(test("customer.level == 'gold'"));
+        assertTrue(test("customer.level != \"silver\""));
+        assertTrue(test("customer.orders[1] eq 2"));
+        assertTrue(test("vip == true"));
+        assertTrue(test("missing == null"));
+        assertFalse(test("missing > 0"));
+    }
+
+    @Test
+    public void testLogic() {
+        assertTrue(test("vip && (missing || amount > 1000)"));
+        assertFalse(test("vip and not (amount > 1000)"));
+        assertTrue(test("zero or vip"));
+        // 关键字需要完整的单词，android 是数据路径
+        assertFalse(test("android"));
+    }
+
+    @Test
+    public void testNoData() {
+        assertFalse(Condition.compile("vip").test(null));
+        assertTrue(Condition.compile("!vip").test(null));
+    }
+
+    @Test
+    public void testPaths() {
+        Set<ValuePath> paths = new LinkedHashSet<>();
+        Condition.compile("vip && customer.level == 'gold' && 'x' != amount").collectPaths(paths);
+        assertEquals(new LinkedHashSet<>(Arrays.asList(ValuePath.compile("vip"),
+                ValuePath.compile("customer.level"), ValuePath.compile("amount"))), paths);
+    }
+
+    @Test
+    public void testInvalid() {
+        String[] invalid = {"", "vip &&", "(vip", "a == 'x", "a > > 1", "vip)", "1.2.3 == a"};
+        for (String expression : invalid) {
+            try {
+                Condition.compile(expression);
+                fail(expression);
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage().startsWith("Invalid test expression"));
+            }
+        }
+    }
+}
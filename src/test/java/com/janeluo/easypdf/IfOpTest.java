@@ -0,0 +1,151 @@
+package com.janeluo.easypdf;
+
+import com.janeluo.easypdf.image.ImageOptions;
+import com.janeluo.easypdf.image.ImagePrefetcher;
+import org.junit.Test;
+import org.xml.sax.Attributes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class IfOpTest {
+    private static final String XML = "<textpdf>"
+            + "<if test=\"vip\"><chapter>VIP</chapter><img src=\"vip.png\"/></if>"
+            + "<else><para>Standard</para><img src=\"standard.png\"/></else>"
+            + "<if test=\"amount gt 1000\"><para>Large <value id=\"amount\"/></para></if>"
+            + "<repeat over=\"items\">"
+            + "<if test=\"qty == 0\"><para><value id=\"name\"/> sold out</para></if>"
+            + "<else><para><value id=\"name\"/>-<value id=\"qty\"/></para></else>"
+            + "</repeat>"
+            + "</textpdf>";
+
+    private static CompiledTemplate compile(String xml) throws IOException {
+        return CompiledTemplate.compile(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Map<String, Object> item(String name, int qty) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", name);
+        item.put("qty", qty);
+        return item;
+    }
+
+    private static DataSource data(boolean vip, int amount) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("vip", vip);
+        data.put("amount", amount);
+        data.put("items", Arrays.asList(item("pen", 0), item("ink", 3)));
+        return data::get;
+    }
+
+    /**
+     * 不加载图片的文档，只记录图片
+     */
+    static class ImageDoc extends CompiledTemplateTest.RecordingDoc {
+        final List<String> images = new ArrayList<>();
+
+        @Override
+        public void addImage(Attributes attrs) {
+            images.add(attrs.getValue("src"));
+        }
+    }
+
+    @Test
+    public void testBranches() throws IOException {
+        CompiledTemplate template = compile(XML);
+        ImageDoc doc = new ImageDoc();
+        template.render(doc, data(true, 1500));
+        assertEquals(Arrays.asList("chapter:VIP", "para:Large1500", "para:pensold out", "para:ink-3"),
+                doc.blocks);
+        assertEquals(Arrays.asList("vip.png"), doc.images);
+
+        doc = new ImageDoc();
+        template.render(doc, data(false, 10));
+        assertEquals(Arrays.asList("para:Standard", "para:pensold out", "para:ink-3"), doc.blocks);
+        assertEquals(Arrays.asList("standard.png"), doc.images);
+    }
+
+    @Test
+    public void testNoData() throws IOException {
+        ImageDoc doc = new ImageDoc();
+        compile(XML).render(doc, null);
+        assertEquals(Arrays.asList("chapter:VIP", "para:Large", "para:sold out"), doc.blocks);
+    }
+
+    @Test
+    public void testHtmlBothBranches() throws IOException {
+        String xml = "<textpdf><if test=\"vip\"><para>VIP <value id=\"card\"/></para></if>"
+                + "<else><para>Address <value id=\"address\"/></para></else></textpdf>";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compile(xml).render(new HTMLDoc(out), null);
+        String html = out.toString("UTF-8");
+        assertTrue(html.contains("id=\"card\""));
+        assertTrue(html.contains("id=\"address\""));
+    }
+
+    @Test
+    public void testHtmlWithData() throws Exception {
+        String xml = "<textpdf><if test=\"vip\"><para>VIP <value id=\"card\"/></para></if>"
+                + "<else><para>Address <value id=\"address\"/></para></else>"
+                + "<repeat over=\"items\"><if test=\"qty == 0\"><para><value id=\"sold\"/></para></if>"
+                + "<else><para><value id=\"qty\"/></para></else></repeat></textpdf>";
+        Map<String, Object> data = new HashMap<>();
+        data.put("vip", true);
+        data.put("items", Arrays.asList(item("pen", 0)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TextParser parser = new TextParser(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), null, out);
+        parser.setData(data);
+        parser.genHtml();
+        String html = out.toString("UTF-8");
+        assertTrue(html.contains("id=\"card\""));
+        assertFalse(html.contains("id=\"address\""));
+        // repeat 的内容不对应某个元素，两个分支都输出
+        assertTrue(html.contains("id=\"sold\""));
+        assertTrue(html.contains("id=\"qty\""));
+    }
+
+    @Test
+    public void testPrefetch() throws IOException {
+        ImagePrefetcher prefetcher = new ImagePrefetcher();
+        compile(XML).prefetchImages(prefetcher, new ImageOptions(), data(false, 10));
+        assertEquals(1, prefetcher.size());
+    }
+
+    @Test
+    public void testBinaryFormat() throws IOException {
+        CompiledTemplate template = compile(XML);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.writeTo(out);
+        CompiledTemplate loaded = TemplateCodec.read(ByteBuffer.wrap(out.toByteArray()));
+
+        for (boolean vip : new boolean[]{true, false}) {
+            ImageDoc expected = new ImageDoc();
+            template.render(expected, data(vip, 1500));
+            ImageDoc actual = new ImageDoc();
+            loaded.render(actual, data(vip, 1500));
+            assertEquals(expected.blocks, actual.blocks);
+            assertEquals(expected.images, actual.images);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testElseWithoutIf() throws IOException {
+        compile("<textpdf><para>a</para><else><para>b</para></else></textpdf>");
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidExpression() throws IOException {
+        compile("<textpdf><if test=\"vip &amp;&amp;\"><para>a</para></if></textpdf>");
+    }
+}
@@ -0,0 +1,92 @@
+package com.janeluo.easypdf;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonExtractorTest {
+    private static final String JSON_TEXT = "{\"meta\":{\"skip\":[1,2,{\"x\":\"}]\\\"\"}]},"
+            + "\"data\":{\"name\":\"Al\\u0069ce \\\"A\\\"\",\"count\":3,\"big\":12345678901,"
+            + "\"total\":12.50,\"paid\":true,\"none\":null,"
+            + "\"customer\":{\"address\":[{\"city\":\"Beijing\"},{\"city\":\"Shanghai\",\"zip\":\"200000\"}],"
+            + "\"notes\":\"unused\"},"
+            + "\"flat.key\":\"flat\",\"image\":{\"type\":\"png\",\"data\":[1,2,3]},"
+            + "\"junk\":[{\"a\":[[],{}],\"b\":\"[{\"}]}}";
+
+    private static JSONObject extract(String... paths) throws IOException {
+        List<ValuePath> list = new ArrayList<>();
+        for (String path : paths) {
+            list.add(ValuePath.compile(path));
+        }
+        return JsonExtractor.extract(new StringReader(JSON_TEXT), list);
+    }
+
+    @Test
+    public void sameValuesAsFullParse() throws IOException {
+        String[] paths = {"name", "count", "big", "total", "paid", "none",
+                "customer.address[1].city", "flat.key", "image", "missing.path"};
+        DataSource extracted = new JsonDataSource(extract(paths).getJSONObject("data"));
+        DataSource full = new JsonDataSource(JSON.parseObject(JSON_TEXT).getJSONObject("data"));
+        for (String path : paths) {
+            ValuePath valuePath = ValuePath.compile(path);
+            assertEquals(path, full.get(valuePath), extracted.get(valuePath));
+        }
+        assertEquals("Alice \"A\"", extracted.get("name"));
+        assertEquals(new BigDecimal("12.50"), extracted.get("total"));
+        assertEquals(12345678901L, extracted.get("big"));
+    }
+
+    @Test
+    public void onlyReferencedDataIsKept() throws IOException {
+        JSONObject json = extract("customer.address[1].city");
+        assertEquals(Collections.singleton("data"), json.keySet());
+        JSONObject data = json.getJSONObject("data");
+        assertEquals(Collections.singleton("customer"), data.keySet());
+        JSONObject customer = data.getJSONObject("customer");
+        assertEquals(Collections.singleton("address"), customer.keySet());
+        // 下标保持不变，没有引用的元素为 null
+        assertEquals(Arrays.asList(null, Collections.singletonMap("city", "Shanghai")),
+                customer.getJSONArray("address"));
+    }
+
+    @Test
+    public void noPaths() throws IOException {
+        JSONObject json = extract();
+        assertTrue(json.getJSONObject("data").isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidJson() throws IOException {
+        JsonExtractor.extract(new StringReader("{\"data\":{\"a\":[1,2}"),
+                Collections.singletonList(ValuePath.compile("b")));
+    }
+
+    @Test
+    public void dataMustBeObject() throws IOException {
+        JSONObject json = JsonExtractor.extract(new StringReader("{\"data\":[1,2]}"),
+                Collections.singletonList(ValuePath.compile("a")));
+        assertFalse(json.get("data") instanceof JSONObject);
+    }
+
+    @Test
+    public void templatePaths() throws IOException {
+        String xml = "<textpdf><para><value id=\"a.b\"/><value id=\"c\"/></para>"
+                + "<qrcode id=\"code\"/><barcode value=\"fixed\"/><img src=\"x.png\"/></textpdf>";
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(Arrays.asList(ValuePath.compile("a.b"), ValuePath.compile("c"), ValuePath.compile("code")),
+                new ArrayList<>(template.getPaths()));
+    }
+}
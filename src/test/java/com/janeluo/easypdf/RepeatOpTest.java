@@ -0,0 +1,136 @@
+package com.janeluo.easypdf;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class RepeatOpTest {
+    private static final String XML = "<textpdf>"
+            + "<repeat over=\"items\" as=\"item\">"
+            + "<para><value id=\"item.name\"/>-<value id=\"qty\"/>-<value id=\"owner\"/></para>"
+            + "</repeat>"
+            + "<table columns=\"1,1\"><cell>Name</cell><cell>Qty</cell>"
+            + "<repeat over=\"items\"><cell id=\"name\"/><cell id=\"qty\">x</cell></repeat>"
+            + "<cell>Total</cell><cell id=\"total\"/></table>"
+            + "</textpdf>";
+
+    private static CompiledTemplate compile(String xml) throws IOException {
+        return CompiledTemplate.compile(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Map<String, Object> item(String name, int qty) {
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", name);
+        item.put("qty", qty);
+        return item;
+    }
+
+    private static DataSource data(Object items) {
+        Map<String, Object> data = new HashMap<>();
+        data.put("items", items);
+        data.put("owner", "Alice");
+        data.put("total", 5);
+        return data::get;
+    }
+
+    @Test
+    public void testRepeat() throws IOException {
+        CompiledTemplate template = compile(XML);
+        CompiledTemplateTest.RecordingDoc doc = new CompiledTemplateTest.RecordingDoc();
+        template.render(doc, data(Arrays.asList(item("pen", 2), item("ink", 3))));
+
+        assertEquals(Arrays.asList("para:pen-2-Alice", "para:ink-3-Alice"), doc.blocks);
+        assertEquals(1, doc.tables);
+        assertEquals(Arrays.asList("Name", "Qty", "pen", "2x", "ink", "3x", "Total", "5"),
+                doc.cells);
+    }
+
+    @Test
+    public void testLazySources() throws IOException {
+        CompiledTemplate template = compile(XML);
+        AtomicInteger consumed = new AtomicInteger();
+        Iterator<Object> iterator = Stream.<Object>of(item("a", 1), item("b", 2))
+                .peek(item -> consumed.incrementAndGet()).iterator();
+        CompiledTemplateTest.RecordingDoc doc = new CompiledTemplateTest.RecordingDoc();
+        // 同一个 Iterator 只能使用一次，表格中没有数据
+        template.render(doc, data(iterator));
+        assertEquals(2, consumed.get());
+        assertEquals(Arrays.asList("para:a-1-Alice", "para:b-2-Alice"), doc.blocks);
+        assertEquals(Arrays.asList("Name", "Qty", "Total", "5"), doc.cells);
+
+        doc = new CompiledTemplateTest.RecordingDoc();
+        template.render(doc, data(new Object[]{item("c", 4)}));
+        assertEquals(Arrays.asList("para:c-4-Alice"), doc.blocks);
+    }
+
+    @Test
+    public void testNotArray() throws IOException {
+        CompiledTemplateTest.RecordingDoc doc = new CompiledTemplateTest.RecordingDoc();
+        compile(XML).render(doc, data("pen"));
+        assertTrue(doc.blocks.isEmpty());
+        assertEquals(Arrays.asList("Name", "Qty", "Total", "5"), doc.cells);
+    }
+
+    @Test
+    public void testBinaryFormat() throws IOException {
+        CompiledTemplate template = compile(XML);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        template.writeTo(out);
+        CompiledTemplate loaded = TemplateCodec.read(ByteBuffer.wrap(out.toByteArray()));
+
+        DataSource data = data(Arrays.asList(item("pen", 2), item("ink", 3)));
+        CompiledTemplateTest.RecordingDoc expected = new CompiledTemplateTest.RecordingDoc();
+        template.render(expected, data);
+        CompiledTemplateTest.RecordingDoc actual = new CompiledTemplateTest.RecordingDoc();
+        loaded.render(actual, data);
+        assertEquals(expected.blocks, actual.blocks);
+        assertEquals(expected.cells, actual.cells);
+    }
+
+    @Test
+    public void testStreamingPaths() throws IOException {
+        String json = "{\"data\":{\"owner\":\"Alice\",\"total\":5,\"other\":[1,2],"
+                + "\"items\":[{\"name\":\"pen\",\"qty\":2,\"note\":\"x\"},{\"name\":\"ink\",\"qty\":3}]}}";
+        JSONObject data = JsonExtractor.extract(new StringReader(json), compile(XML).getPaths())
+                .getJSONObject("data");
+        assertFalse(data.containsKey("other"));
+        JSONArray items = data.getJSONArray("items");
+        assertEquals(2, items.size());
+        assertEquals(new HashSet<>(Arrays.asList("name", "qty")), items.getJSONObject(0).keySet());
+
+        CompiledTemplateTest.RecordingDoc doc = new CompiledTemplateTest.RecordingDoc();
+        compile(XML).render(doc, new JsonDataSource(data));
+        assertEquals(Arrays.asList("para:pen-2-Alice", "para:ink-3-Alice"), doc.blocks);
+    }
+
+    @Test
+    public void testHtmlValueCells() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        compile(XML).render(new HTMLDoc(out), null);
+        String html = out.toString("UTF-8");
+        assertTrue(html.contains("<input type=\"text\" id=\"name\" name=\"name\" /></td>"));
+        assertTrue(html.contains("<input type=\"text\" id=\"qty\" name=\"qty\" />x</td>"));
+        assertTrue(html.contains(">Name</td>"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRepeatInBlock() throws IOException {
+        compile("<textpdf><para><repeat over=\"items\"/></para></textpdf>");
+    }
+}
@@ -0,0 +1,97 @@
+package com.janeluo.easypdf;
+
+import com.itextpdf.layout.property.TextAlignment;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TemplateBuilderTest {
+    private static final String XML = "<textpdf>"
+            + "<title>Invoice</title>"
+            + "<para align=\"center\">Name: <value id=\"name\"/></para>"
+            + "<para>Code: <value id=\"code\" font-style=\"italic\"/><span super=\"true\">1</span></para>"
+            + "<pagebreak/>"
+            + "<table columns=\"1,2\"><cell>a</cell><cell>b</cell></table>"
+            + "</textpdf>";
+
+    private static CompiledTemplate built() {
+        return TemplateBuilder.create()
+                .title("Invoice")
+                .para(TextStyle.create().align(TextAlignment.CENTER),
+                        p -> p.text("Name:").value("name"))
+                .para(p -> p.text("Code:")
+                        .value("code", TextStyle.create().italic())
+                        .text("1", TextStyle.create().superscript()))
+                .pageBreak()
+                .table(new int[]{1, 2}, t -> t.cell("a").cell("b"))
+                .build();
+    }
+
+    private static DataSource data() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("name", "Alice");
+        map.put("code", "A-1");
+        return new MapDataSource(map);
+    }
+
+    @Test
+    public void sameAsXml() throws IOException {
+        CompiledTemplate xml = CompiledTemplate.compile(
+                new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)));
+
+        CompiledTemplateTest.RecordingDoc expected = new CompiledTemplateTest.RecordingDoc();
+        xml.render(expected, data());
+        CompiledTemplateTest.RecordingDoc actual = new CompiledTemplateTest.RecordingDoc();
+        built().render(actual, data());
+
+        assertEquals(expected.blocks, actual.blocks);
+        assertEquals(expected.styles, actual.styles);
+        assertEquals(expected.pages, actual.pages);
+        assertEquals(expected.tables, actual.tables);
+        assertEquals(xml.getPaths(), built().getPaths());
+    }
+
+    @Test
+    public void chunkAttributes() {
+        BlockOp block = (BlockOp) built().ops().get(1);
+        TextChunk value = block.chunks.get(1);
+        assertTrue(value.isValue());
+        assertEquals("center", value.getAttrs().get("align"));
+        assertEquals("bold,underline", value.getValueFontStyle());
+        assertEquals(TextAlignment.CENTER, value.getStyle().alignment);
+    }
+
+    @Test
+    public void binaryFormat() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        built().writeTo(out);
+        CompiledTemplate loaded = TemplateCodec.read(ByteBuffer.wrap(out.toByteArray()));
+        CompiledTemplateTest.RecordingDoc doc = new CompiledTemplateTest.RecordingDoc();
+        loaded.render(doc, data());
+        assertEquals("para:Name:Alice", doc.blocks.get(1));
+    }
+
+    @Test
+    public void textStyle() {
+        TextStyle style = TextStyle.create().bold().italic().bold().indent(22).spaceAfter(1.5f);
+        assertEquals("bold,italic", style.attrs().get("font-style"));
+        assertEquals("22", style.attrs().get("indent"));
+        assertEquals("1.5", style.attrs().get("space-after"));
+        assertTrue(TextStyle.create().attrs().isEmpty());
+    }
+
+    @Test
+    public void emptyBlock() {
+        BlockOp block = (BlockOp) TemplateBuilder.create().para(p -> {
+        }).build().ops().get(0);
+        assertEquals(" ", block.chunks.get(0).getContents());
+    }
+}
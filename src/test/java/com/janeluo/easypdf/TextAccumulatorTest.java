@@ -0,0 +1,62 @@
+package com.janeluo.easypdf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextAccumulatorTest {
+
+    private static void append(TextAccumulator text, String s) {
+        char[] window = ("##" + s + "##").toCharArray();
+        text.append(window, 2, s.length());
+    }
+
+    @Test
+    public void trimsAndDropsLineBreaks() {
+        TextAccumulator text = new TextAccumulator();
+        append(text, "\n    Hello  world\n    next line\t\n  ");
+        assertEquals("Hello  worldnext line", text.take());
+        assertEquals(0, text.length());
+    }
+
+    @Test
+    public void keepsStateAcrossCallbacks() {
+        TextAccumulator text = new TextAccumulator();
+        append(text, "welcome ");
+        append(text, "&");
+        append(text, " enjoy \n");
+        append(text, "   more");
+        assertEquals("welcome & enjoymore", text.take());
+    }
+
+    @Test
+    public void elementBoundaryTrims() {
+        TextAccumulator text = new TextAccumulator();
+        append(text, "Name: ");
+        text.endText();
+        assertEquals(5, text.length());
+        append(text, "  tail");
+        assertEquals("Name:tail", text.take());
+    }
+
+    @Test
+    public void rawCharactersAreKept() {
+        TextAccumulator text = new TextAccumulator();
+        append(text, "a ");
+        text.appendRaw('\n');
+        text.appendRaw(' ');
+        append(text, " b");
+        assertEquals("a\n b", text.take());
+    }
+
+    @Test
+    public void growsBuffer() {
+        TextAccumulator text = new TextAccumulator();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            append(text, "word" + i + " ");
+            expected.append("word").append(i).append(' ');
+        }
+        assertEquals(expected.toString().trim(), text.take());
+    }
+}
@@ -0,0 +1,84 @@
+package com.janeluo.easypdf;
+
+import com.itextpdf.layout.property.TextAlignment;
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TextChunkTest {
+
+    @Test
+    public void childInheritsWithoutCopy() {
+        TextChunk parent = new TextChunk();
+        AttributesImpl attrs = new AttributesImpl();
+        attrs.addAttribute("", "", "font-style", "CDATA", "bold");
+        attrs.addAttribute("", "", "font-size", "CDATA", "12");
+        parent.addAttrs(attrs);
+
+        TextChunk child = new TextChunk(parent);
+        assertSame(parent.getAttributes(), child.getAttributes());
+
+        child.addAttr("font-style", "italic");
+        assertEquals("italic", child.getAttrs().get("font-style"));
+        assertEquals("12", child.getAttrs().get("font-size"));
+        assertEquals("bold", parent.getAttrs().get("font-style"));
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("font-style", "italic");
+        expected.put("font-size", "12");
+        assertEquals(expected, child.getAttrs());
+    }
+
+    @Test
+    public void cloneSharesUntilOverride() {
+        TextChunk chunk = new TextChunk();
+        chunk.addAttr("id", "name");
+        TextChunk copy = chunk.clone();
+        assertSame(chunk.getAttributes(), copy.getAttributes());
+
+        copy.addAttr("font-style", "bold");
+        assertNull(chunk.getAttrs().get("font-style"));
+        assertEquals("name", copy.getAttrs().get("id"));
+    }
+
+    @Test
+    public void deepNestingKeepsLookups() {
+        TextChunk chunk = new TextChunk();
+        chunk.addAttr("align", "center");
+        for (int i = 0; i < 20; i++) {
+            chunk = new TextChunk(chunk);
+            chunk.addAttr("level", String.valueOf(i));
+        }
+        assertEquals("center", chunk.getAttrs().get("align"));
+        assertEquals("19", chunk.getAttrs().get("level"));
+        assertEquals(2, chunk.getAttrs().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void attributesAreReadOnly() {
+        TextChunk chunk = new TextChunk();
+        chunk.addAttr("id", "name");
+        chunk.getAttributes().put("id", "other");
+    }
+
+    @Test
+    public void attrsWriteThrough() {
+        TextChunk parent = new TextChunk();
+        parent.addAttr("id", "name");
+        TextChunk child = new TextChunk(parent);
+
+        Map<String, String> attrs = child.getAttrs();
+        assertEquals("name", attrs.put("id", "other"));
+        Map<String, String> more = new HashMap<>();
+        more.put("align", "right");
+        attrs.putAll(more);
+        assertEquals("other", child.getAttributes().get("id"));
+        assertEquals("right", attrs.get("align"));
+        assertEquals(TextAlignment.RIGHT, child.getStyle().alignment);
+        assertEquals("name", parent.getAttributes().get("id"));
+    }
+}
@@ -0,0 +1,124 @@
+package com.janeluo.easypdf;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class ValueFormatTest {
+    private static ValueFormat compile(String name, String value) {
+        return ValueFormat.compile(Collections.singletonMap(name, value));
+    }
+
+    @Test
+    public void testNumber() {
+        ValueFormat format = compile("format", "#,##0.00");
+        assertEquals("1,234,567.89", format.format(1234567.891));
+        assertEquals("0.13", format.format(new BigDecimal("0.125")));
+        assertEquals("12.00", format.format(12));
+        assertEquals("3.50", format.format("3.5"));
+        // 不是数字时使用原来的文字
+        assertNull(format.format("n/a"));
+        assertNull(format.format(true));
+    }
+
+    private static String symbol(String code) {
+        return Currency.getInstance(code).getSymbol(Locale.CHINA);
+    }
+
+    @Test
+    public void testCurrency() {
+        // 货币符号来自 JDK 的区域数据
+        assertEquals(symbol("CNY") + "1,234.50", compile("currency", "CNY").format(1234.5));
+        assertEquals(symbol("JPY") + "1,235", compile("currency", "JPY").format(1234.5));
+
+        Map<String, String> attrs = new HashMap<>();
+        attrs.put("currency", "USD");
+        attrs.put("format", "#,##0.0 ¤¤");
+        assertEquals("1,234.5 USD", ValueFormat.compile(attrs).format(1234.5));
+    }
+
+    @Test
+    public void testDate() {
+        ValueFormat format = compile("date", "yyyy年MM月dd日");
+        assertEquals("2021年05月01日", format.format(LocalDate.of(2021, 5, 1)));
+        assertEquals("2021年05月01日", format.format("2021-05-01"));
+        assertEquals("2021年05月01日", format.format("2021-05-01 10:30:00"));
+        assertEquals("2021年05月01日", format.format("2021-05-01T10:30:00+08:00"));
+        assertNull(format.format("yesterday"));
+
+        // int 不是毫秒数，使用原来的文字
+        assertNull(format.format(20240305));
+        long millis = LocalDate.of(2021, 5, 1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertEquals("2021年05月01日", format.format(millis));
+
+        format = compile("date", "HH:mm");
+        assertEquals("10:30", format.format(LocalDateTime.of(2021, 5, 1, 10, 30)));
+        assertNull(format.format(LocalDate.of(2021, 5, 1)));
+    }
+
+    @Test
+    public void testShared() {
+        // 重新编译模板时共享同一个格式化
+        assertSame(compile("format", "#,##0.00"), compile("format", "#,##0.00"));
+        assertNotSame(compile("format", "#,##0.00"), compile("currency", "CNY"));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertNull(ValueFormat.compile(Collections.emptyMap()));
+        assertNull(compile("format", "#,##0.00.0"));
+        assertNull(compile("currency", "XYZ1"));
+        assertNull(compile("date", "yyyy-MM-dd{"));
+    }
+
+    @Test
+    public void testConcurrent() {
+        ValueFormat format = compile("format", "#,##0.00");
+        List<String> expected = IntStream.range(0, 20000)
+                .mapToObj(i -> String.format("%,d.%02d", i, i % 100)).collect(Collectors.toList());
+        List<String> actual = IntStream.range(0, 20000).parallel()
+                .mapToObj(i -> format.format(new BigDecimal(i + "." + String.format("%02d", i % 100))))
+                .collect(Collectors.toList());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRender() throws IOException {
+        String xml = "<textpdf><para>Total: <value id=\"total\" format=\"#,##0.00\"/>"
+                + " Date: <value id=\"date\" date=\"yyyy/MM/dd\"/></para>"
+                + "<table columns=\"1,1\"><repeat over=\"items\">"
+                + "<cell id=\"name\"/><cell id=\"price\" currency=\"CNY\"/></repeat></table></textpdf>";
+        CompiledTemplate template = CompiledTemplate.compile(
+                new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+        Map<String, Object> item = new HashMap<>();
+        item.put("name", "pen");
+        item.put("price", new BigDecimal("1999.5"));
+        Map<String, Object> data = new HashMap<>();
+        data.put("total", 1999.5);
+        data.put("date", "2021-05-01");
+        data.put("items", Collections.singletonList(item));
+
+        CompiledTemplateTest.RecordingDoc doc = new CompiledTemplateTest.RecordingDoc();
+        template.render(doc, data::get);
+        assertEquals("para:Total:1,999.50Date:2021/05/01", doc.blocks.get(0));
+        assertEquals(Arrays.asList("pen", symbol("CNY") + "1,999.50"), doc.cells);
+    }
+}
@@ -0,0 +1,63 @@
+package com.janeluo.easypdf;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ValuePathTest {
+    private static final DataSource DATA = new JsonDataSource(JSON.parseObject(
+            "{\"customer\":{\"name\":\"Alice\",\"address\":[{\"city\":\"Beijing\"},{\"city\":\"Shanghai\"}]},"
+                    + "\"matrix\":[[1,2],[3,4]],\"total\":12.50,\"count\":3,\"paid\":true,"
+                    + "\"flat.key\":\"flat\"}"));
+
+    @Test
+    public void nestedPaths() {
+        assertEquals("Alice", DATA.get(ValuePath.compile("customer.name")));
+        assertEquals("Shanghai", DATA.get(ValuePath.compile("customer.address[1].city")));
+        assertEquals(4, DATA.get(ValuePath.compile("matrix[1][1]")));
+        assertNull(DATA.get(ValuePath.compile("customer.address[5].city")));
+        assertNull(DATA.get(ValuePath.compile("customer.name.first")));
+    }
+
+    @Test
+    public void flatKeys() {
+        assertEquals("flat", DATA.get(ValuePath.compile("flat.key")));
+        ValuePath path = ValuePath.compile("count");
+        assertFalse(path.isCompound());
+        assertEquals(3, DATA.get(path));
+
+        // 格式错误的路径按完整的 key 处理
+        Map<String, Object> map = new HashMap<>();
+        map.put("a[x]", "odd");
+        map.put("a..b", "dots");
+        DataSource source = map::get;
+        assertEquals("odd", source.get(ValuePath.compile("a[x]")));
+        assertEquals("dots", source.get(ValuePath.compile("a..b")));
+    }
+
+    @Test
+    public void arrays() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("items", new String[]{"a", "b"});
+        DataSource source = map::get;
+        assertEquals("b", source.get(ValuePath.compile("items[1]")));
+        assertNull(source.get(ValuePath.compile("items[2]")));
+    }
+
+    @Test
+    public void text() {
+        assertEquals("12.50", ValuePath.text(DATA.get(ValuePath.compile("total"))));
+        assertEquals("true", ValuePath.text(DATA.get(ValuePath.compile("paid"))));
+        assertEquals("100", ValuePath.text(100.0d));
+        assertEquals("0.00001", ValuePath.text(0.00001d));
+        assertEquals("1.5", ValuePath.text(1.5f));
+        assertEquals("100000000000000000000", ValuePath.text(new BigDecimal("1E+20")));
+        assertNull(ValuePath.text(new JSONObject()));
+    }
+}
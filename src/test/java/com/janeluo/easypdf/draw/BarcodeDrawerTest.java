@@ -0,0 +1,71 @@
+package com.janeluo.easypdf.draw;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.common.BitMatrix;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class BarcodeDrawerTest {
+    @After
+    public void tearDown() {
+        BarcodeCache.setMaxSize(BarcodeCache.DEFAULT_MAX_SIZE);
+        BarcodeCache.clear();
+    }
+
+    private static BitMatrix redraw(BitMatrix matrix) {
+        BitMatrix result = new BitMatrix(matrix.getWidth(), matrix.getHeight());
+        for (int[] rect : BarcodeDrawer.rectangles(matrix)) {
+            for (int x = rect[0]; x < rect[0] + rect[2]; x++) {
+                for (int y = rect[1]; y < rect[1] + rect[3]; y++) {
+                    assertFalse("overlapped", result.get(x, y));
+                    result.set(x, y);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testQrCode() throws IOException {
+        BitMatrix matrix = BarcodeCache.get(BarcodeFormat.QR_CODE,
+                "https://example.com/verify?id=12345", "H", 1);
+        assertEquals(matrix, redraw(matrix));
+
+        float[] size = BarcodeDrawer.displaySize(matrix, 100, 0);
+        assertArrayEquals(size, BarcodeDrawer.displaySize(
+                matrix.getWidth(), matrix.getHeight(), 100, 0), 0.01f);
+    }
+
+    @Test
+    public void testCode128() throws IOException {
+        BitMatrix matrix = BarcodeCache.get(BarcodeFormat.CODE_128, "INV-2021-0001", null, -1);
+        assertEquals(1, matrix.getHeight());
+        assertEquals(matrix, redraw(matrix));
+
+        float[] size = BarcodeDrawer.displaySize(matrix, 0, 0);
+        assertEquals(matrix.getWidth(), size[0], 0.01);
+        assertEquals(36, size[1], 0.01);
+    }
+
+    @Test
+    public void testCache() throws IOException {
+        BitMatrix first = BarcodeCache.get(BarcodeFormat.QR_CODE, "a", "M", -1);
+        assertSame(first, BarcodeCache.get(BarcodeFormat.QR_CODE, "a", "M", -1));
+        assertNotSame(first, BarcodeCache.get(BarcodeFormat.QR_CODE, "a", "L", -1));
+        assertEquals(1, BarcodeCache.getHitCount());
+
+        BarcodeCache.setMaxSize(1);
+        assertEquals(1, BarcodeCache.size());
+        assertEquals(BarcodeFormat.CODE_128, BarcodeCache.parseFormat("code-128"));
+        assertNull(BarcodeCache.parseFormat("unknown"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidContents() throws IOException {
+        BarcodeCache.get(BarcodeFormat.EAN_13, "not a number", null, -1);
+    }
+}
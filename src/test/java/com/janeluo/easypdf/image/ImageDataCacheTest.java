@@ -0,0 +1,115 @@
+package com.janeluo.easypdf.image;
+
+import com.itextpdf.io.image.ImageData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ImageDataCacheTest {
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        ImageDataCache.clear();
+        dir = File.createTempFile("easypdf-", "-img");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        ImageDataCache.setMaxBytes(ImageDataCache.DEFAULT_MAX_BYTES);
+        ImageDataCache.clear();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private String createImage(String name, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, x * 31 + y * 17);
+            }
+        }
+        File file = new File(dir, name);
+        ImageIO.write(image, "png", file);
+        return file.getAbsolutePath();
+    }
+
+    @Test
+    public void testHit() throws IOException {
+        String src = createImage("a.png", 20, 20);
+        ImageData first = ImageDataCache.get(src);
+        ImageData second = ImageDataCache.get(src);
+        assertSame(first, second);
+        assertEquals(1, ImageDataCache.getMissCount());
+        assertEquals(1, ImageDataCache.getHitCount());
+        assertTrue(ImageDataCache.getCurrentBytes() > 0);
+    }
+
+    @Test
+    public void testReloadWhenModified() throws IOException {
+        String src = createImage("a.png", 20, 20);
+        ImageData first = ImageDataCache.get(src);
+        new File(src).setLastModified(new File(src).lastModified() - 10000);
+        ImageData second = ImageDataCache.get(src);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() throws IOException {
+        String a = createImage("a.png", 40, 40);
+        String b = createImage("b.png", 40, 40);
+        String c = createImage("c.png", 40, 40);
+
+        long size = ImageDataCache.getCurrentBytes();
+        ImageDataCache.get(a);
+        long one = ImageDataCache.getCurrentBytes() - size;
+        ImageDataCache.setMaxBytes(one * 2 + one / 2);
+
+        ImageDataCache.get(b);
+        ImageDataCache.get(a);
+        ImageDataCache.get(c);
+
+        assertEquals(2, ImageDataCache.size());
+        assertEquals(1, ImageDataCache.getEvictionCount());
+        assertTrue(ImageDataCache.getCurrentBytes() <= ImageDataCache.getMaxBytes());
+
+        long misses = ImageDataCache.getMissCount();
+        ImageDataCache.get(a);
+        assertEquals(misses, ImageDataCache.getMissCount());
+        ImageDataCache.get(b);
+        assertEquals(misses + 1, ImageDataCache.getMissCount());
+    }
+
+    @Test
+    public void testNoVariant() throws IOException {
+        String src = createImage("a.png", 20, 20);
+        ImageDataCache.get(src);
+        long bytes = ImageDataCache.getCurrentBytes();
+        int[] calls = {0};
+
+        // 不能生成时不缓存，下次重新生成
+        for (int i = 0; i < 2; i++) {
+            assertNull(ImageDataCache.get(src, "10x10q0.8", () -> {
+                calls[0]++;
+                return null;
+            }));
+        }
+        assertEquals(2, calls[0]);
+        assertEquals(1, ImageDataCache.size());
+        assertEquals(bytes, ImageDataCache.getCurrentBytes());
+    }
+}
@@ -0,0 +1,54 @@
+package com.janeluo.easypdf.image;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class ImagePrefetcherTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        ImageDataCache.clear();
+        file = File.createTempFile("easypdf-", ".png");
+        ImageIO.write(new BufferedImage(40, 20, BufferedImage.TYPE_INT_RGB), "png", file);
+    }
+
+    @After
+    public void tearDown() {
+        ImageDataCache.clear();
+        file.delete();
+    }
+
+    @Test
+    public void testPrefetch() throws IOException {
+        ImagePrefetcher prefetcher = new ImagePrefetcher();
+        ImageOptions options = new ImageOptions();
+        String src = file.getAbsolutePath();
+        prefetcher.prefetch(src, options, 80, 0);
+        prefetcher.prefetch(src, options, 80, 0);
+        assertEquals(1, prefetcher.size());
+
+        ImageProcessor.ProcessedImage image = prefetcher.get(src, options, 80, 0);
+        assertNotNull(image);
+        assertEquals(80, image.getWidth(), 0.01);
+        assertEquals(40, image.getHeight(), 0.01);
+        assertNull(prefetcher.get(src, options, 0, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void testMissingImage() throws IOException {
+        ImagePrefetcher prefetcher = new ImagePrefetcher();
+        ImageOptions options = new ImageOptions();
+        String src = new File(file.getParentFile(), "missing-" + file.getName()).getAbsolutePath();
+        prefetcher.prefetch(src, options, 0, 0);
+        prefetcher.get(src, options, 0, 0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.janeluo.easypdf.image;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+public class InlineImageTest {
+
+    @Test
+    public void testDecode() throws IOException {
+        byte[] bytes = "not really a png, but bytes anyway".getBytes(StandardCharsets.UTF_8);
+        String base64 = Base64.getEncoder().encodeToString(bytes);
+
+        InlineImage plain = InlineImage.decode(base64);
+        InlineImage uri = InlineImage.decode("data:image/png;base64," + base64);
+        InlineImage raw = InlineImage.decode(bytes);
+
+        assertArrayEquals(bytes, plain.getData());
+        assertArrayEquals(bytes, uri.getData());
+        assertEquals(plain.getHash(), uri.getHash());
+        assertEquals(plain.getHash(), raw.getHash());
+        assertEquals(40, plain.getHash().length());
+    }
+
+    @Test
+    public void testDecodeMime() throws IOException {
+        byte[] bytes = new byte[1000];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        String base64 = Base64.getMimeEncoder().encodeToString(bytes);
+        assertTrue(base64.contains("\r\n"));
+        assertArrayEquals(bytes, InlineImage.decode(base64).getData());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalid() throws IOException {
+        InlineImage.decode(12);
+    }
+}
@@ -0,0 +1,64 @@
+package com.janeluo.easypdf.template;
+
+import com.itextpdf.kernel.geom.PageSize;
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfName;
+import com.itextpdf.kernel.pdf.PdfReader;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class TemplateBackgroundTest {
+    @After
+    public void tearDown() {
+        TemplateStore.clear();
+    }
+
+    @Test
+    public void testEveryPage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfDocument document = new PdfDocument(new PdfWriter(out))) {
+            document.addNewPage(PageSize.A5);
+        }
+        TemplatePdf template = TemplateStore.get(new ByteArrayInputStream(out.toByteArray()));
+
+        out = new ByteArrayOutputStream();
+        try (PdfDocument document = new PdfDocument(new PdfWriter(out))) {
+            TemplateBackground background = TemplateBackground.install(template, 1, document);
+            assertEquals(PageSize.A5.getWidth(), background.getPageSize().getWidth(), 0.01);
+            document.addNewPage();
+            document.addNewPage();
+        }
+
+        try (PdfDocument document = new PdfDocument(new PdfReader(
+                new ByteArrayInputStream(out.toByteArray())))) {
+            assertEquals(2, document.getNumberOfPages());
+            // 两页引用同一个 XObject
+            PdfName name = new PdfName("Fm1");
+            assertEquals(1, document.getPage(1).getResources()
+                    .getResourceNames(PdfName.XObject).size());
+            assertEquals(document.getPage(1).getResources().getResourceObject(PdfName.XObject, name)
+                            .getIndirectReference(),
+                    document.getPage(2).getResources().getResourceObject(PdfName.XObject, name)
+                            .getIndirectReference());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testPageOutOfRange() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (PdfDocument document = new PdfDocument(new PdfWriter(out))) {
+            document.addNewPage();
+        }
+        TemplatePdf template = TemplateStore.get(new ByteArrayInputStream(out.toByteArray()));
+        try (PdfDocument document = new PdfDocument(new PdfWriter(new ByteArrayOutputStream()))) {
+            TemplateBackground.install(template, 2, document);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.janeluo.easypdf.template;
+
+import com.itextpdf.kernel.pdf.PdfDocument;
+import com.itextpdf.kernel.pdf.PdfWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+
+public class TemplateStoreTest {
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        TemplateStore.clear();
+        file = File.createTempFile("easypdf-", ".pdf");
+    }
+
+    @After
+    public void tearDown() {
+        TemplateStore.setMaxBytes(TemplateStore.DEFAULT_MAX_BYTES);
+        TemplateStore.clear();
+        file.delete();
+    }
+
+    private static void createPdf(OutputStream out, int pages) {
+        try (PdfDocument document = new PdfDocument(new PdfWriter(out))) {
+            for (int i = 0; i < pages; i++) {
+                document.addNewPage();
+            }
+        }
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createPdf(out, 2);
+        byte[] data = out.toByteArray();
+
+        TemplatePdf first = TemplateStore.get(new ByteArrayInputStream(data));
+        TemplatePdf second = TemplateStore.get(new ByteArrayInputStream(data));
+        assertSame(first, second);
+        assertEquals(2, first.getNumberOfPages());
+        assertEquals(1, TemplateStore.getMissCount());
+        assertEquals(1, TemplateStore.getHitCount());
+
+        // 每个文档使用自己的 PdfReader
+        try (PdfDocument a = new PdfDocument(first.newReader());
+             PdfDocument b = new PdfDocument(first.newReader())) {
+            assertEquals(2, a.getNumberOfPages());
+            assertEquals(2, b.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testKeyedStream() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createPdf(out, 2);
+        ByteArrayInputStream stream = new ByteArrayInputStream(out.toByteArray());
+
+        TemplatePdf first = TemplateStore.get("invoice-v1", stream);
+        assertEquals(0, stream.available());
+        // 命中时不读取输入流
+        ByteArrayInputStream again = new ByteArrayInputStream(out.toByteArray());
+        assertSame(first, TemplateStore.get("invoice-v1", again));
+        assertEquals(out.size(), again.available());
+        assertEquals(1, TemplateStore.getMissCount());
+    }
+
+    @Test
+    public void testFileChanged() throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            createPdf(out, 1);
+        }
+        TemplatePdf first = TemplateStore.get(file.getPath());
+        assertSame(first, TemplateStore.get(file.getPath()));
+
+        try (OutputStream out = new FileOutputStream(file)) {
+            createPdf(out, 3);
+        }
+        file.setLastModified(file.lastModified() + 2000);
+        TemplatePdf second = TemplateStore.get(file.getPath());
+        assertNotSame(first, second);
+        assertEquals(3, second.getNumberOfPages());
+    }
+
+    @Test
+    public void testMappedPath() throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            createPdf(out, 2);
+        }
+        TemplatePdf template = TemplateStore.get(file.toPath());
+        assertTrue(template.isMapped());
+        assertEquals(2, template.getNumberOfPages());
+        assertSame(template, TemplateStore.get(file.toPath()));
+        assertEquals(file.length(), TemplateStore.getMappedBytes());
+        assertEquals(0, TemplateStore.getCurrentBytes());
+
+        try (PdfDocument a = new PdfDocument(template.newReader());
+             PdfDocument b = new PdfDocument(template.newReader())) {
+            assertEquals(2, a.getNumberOfPages());
+            assertEquals(2, b.getNumberOfPages());
+        }
+    }
+
+    @Test
+    public void testRebuiltXref() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        createPdf(out, 1);
+        String pdf = new String(out.toByteArray(), "ISO-8859-1");
+        // 破坏 startxref 的偏移量
+        int index = pdf.lastIndexOf("startxref") + "startxref".length();
+        byte[] broken = (pdf.substring(0, index) + "\n1\n%%EOF\n").getBytes("ISO-8859-1");
+
+        TemplatePdf template = TemplateStore.get(new ByteArrayInputStream(broken));
+        assertEquals(1, template.getNumberOfPages());
+        try (PdfDocument document = new PdfDocument(template.newReader())) {
+            assertFalse(document.getReader().hasRebuiltXref());
+        }
+    }
+}